@@ -0,0 +1,24 @@
+package com.redgrapefruit.arctree;
+
+import com.redgrapefruit.arctree.feature.ArctreeFeatures;
+import com.redgrapefruit.arctree.fill.FillCommand;
+import com.redgrapefruit.arctree.placement.ArctreePlacementModifiers;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v1.CommandRegistrationCallback;
+
+/**
+ * Arctree's own {@link ModInitializer}, which registers Arctree's features, placement modifier types and the
+ * {@code /arctree} command.
+ * <br><br>
+ * Everything else is set up when your trees are registered.
+ */
+public final class ArctreeMod implements ModInitializer {
+    @Override
+    public void onInitialize() {
+        // Registries aren't thread-safe, so nothing may be registered by the first lazy tree materializing during world generation
+        ArctreeFeatures.init();
+        ArctreePlacementModifiers.init();
+
+        CommandRegistrationCallback.EVENT.register((dispatcher, dedicated) -> FillCommand.register(dispatcher));
+    }
+}
@@ -0,0 +1,122 @@
+package com.redgrapefruit.arctree;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * A fast, splittable {@link Random} for tree generation, based on xoroshiro128++.
+ * <br><br>
+ * Unlike {@link Random}, drawing a number doesn't go through an {@code AtomicLong}, so an instance must only ever be
+ * used by a single thread. Use {@link #split()} or {@link #split(long)} to hand independent, reproducible streams to
+ * other threads or subtasks.
+ * <br><br>
+ * Arctree trees run their placers, providers and decorators with an {@link ArctreeRandom} derived from the incoming
+ * {@link Random}. Your own placers or modifiers can use {@link #of(Random)} to get one.
+ */
+public final class ArctreeRandom extends Random {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long low;
+    private long high;
+
+    /**
+     * Creates an {@link ArctreeRandom} out of a seed
+     *
+     * @param seed The seed, expanded into the full state
+     */
+    public ArctreeRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Derives an {@link ArctreeRandom} from another {@link Random}, drawing a single {@code long} from it.
+     * <br><br>
+     * If the {@link Random} already is an {@link ArctreeRandom}, it's returned as is.
+     *
+     * @param random The incoming {@link Random}
+     * @return The derived {@link ArctreeRandom}
+     */
+    public static @NotNull ArctreeRandom of(@NotNull Random random) {
+        if (random instanceof ArctreeRandom arctreeRandom) return arctreeRandom;
+
+        return new ArctreeRandom(random.nextLong());
+    }
+
+    /**
+     * Creates a new, independent {@link ArctreeRandom}, advancing this one.
+     */
+    public @NotNull ArctreeRandom split() {
+        return new ArctreeRandom(nextLong());
+    }
+
+    /**
+     * Creates a new {@link ArctreeRandom} for the given salt, without advancing this one.
+     * <br><br>
+     * The same state and salt always give the same stream, which makes it suitable for numbering subtasks.
+     *
+     * @param salt For example the index of a subtask
+     */
+    public @NotNull ArctreeRandom split(long salt) {
+        return new ArctreeRandom(mix(low ^ mix(high + salt * GOLDEN_GAMMA)));
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        // Also resets the cached gaussian. Called by the Random constructor, before any field initializer runs
+        super.setSeed(seed);
+
+        low = mix(seed);
+        high = mix(seed + GOLDEN_GAMMA);
+
+        // An all-zero state would only ever produce zeroes
+        if ((low | high) == 0L) high = GOLDEN_GAMMA;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        long s0 = low;
+        long s1 = high;
+        long result = Long.rotateLeft(s0 + s1, 17) + s0;
+
+        s1 ^= s0;
+        low = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+        high = Long.rotateLeft(s1, 28);
+
+        return result;
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return nextLong() < 0L;
+    }
+
+    @Override
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The SplitMix64 finalizer, spreads the bits of a seed over the whole {@code long}
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -1,5 +1,11 @@
 package com.redgrapefruit.arctree;
 
+import com.redgrapefruit.arctree.feature.ArctreeFeatures;
+import com.redgrapefruit.arctree.feature.LazyTreeFeature;
+import com.redgrapefruit.arctree.feature.LazyTreeFeatureConfig;
+import com.redgrapefruit.arctree.placement.PlannedPlacementModifier;
+import com.redgrapefruit.arctree.retrogen.RetrogenPlacementModifier;
+import com.redgrapefruit.arctree.retrogen.RetrogenService;
 import net.fabricmc.fabric.api.biome.v1.BiomeModifications;
 import net.fabricmc.fabric.api.biome.v1.BiomeSelectionContext;
 import net.minecraft.util.Identifier;
@@ -7,14 +13,22 @@ import net.minecraft.util.Pair;
 import net.minecraft.util.registry.BuiltinRegistries;
 import net.minecraft.util.registry.Registry;
 import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.biome.Biome;
 import net.minecraft.world.gen.GenerationStep;
 import net.minecraft.world.gen.decorator.PlacementModifier;
 import net.minecraft.world.gen.feature.ConfiguredFeature;
 import net.minecraft.world.gen.feature.PlacedFeature;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Represents the output of an {@link TreeBuilder} instance.
@@ -30,25 +44,138 @@ import java.util.function.Predicate;
  * easy-to-use {@link PlacementModifier}s.
  */
 public final class ConfiguredTree {
-    private final @NotNull ConfiguredFeature<?, ?> configuredFeature;
+    /**
+     * All trees registered with {@link #register(Identifier)}, by their {@link Identifier}
+     */
+    private static final Map<Identifier, ConfiguredTree> REGISTERED = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link ConfiguredFeature}, {@code null} until a lazy tree has been materialized
+     */
+    private volatile @Nullable ConfiguredFeature<?, ?> configuredFeature;
+
+    /**
+     * Creates the {@link ConfiguredFeature} of a lazy tree, {@code null} once it has been materialized
+     */
+    private @Nullable Supplier<ConfiguredFeature<?, ?>> factory;
+
+    /**
+     * The {@link ConfiguredFeature} that gets registered and is placed by the {@link #placedFeature}. For lazy trees,
+     * this is a {@link LazyTreeFeature} that only refers to the tree by its {@link Identifier}
+     */
+    private final @NotNull ConfiguredFeature<?, ?> registeredFeature;
+
+    /**
+     * The {@link Identifier} the tree is registered under, {@code null} until {@link #register(Identifier)}
+     */
+    private volatile @Nullable Identifier id;
+
+    private final boolean lazy;
     private final @NotNull PlacedFeature placedFeature;
     private final @NotNull Predicate<BiomeSelectionContext> selector;
+    private final @Nullable RetrogenPlacementModifier retrogenMarker;
+    private final @Nullable PlannedPlacementModifier plannedModifier;
+
+    /**
+     * The keys of all biomes that the {@link #selector} has matched so far
+     */
+    private final Set<RegistryKey<Biome>> matchedBiomes = ConcurrentHashMap.newKeySet();
 
     public ConfiguredTree(
             @NotNull ConfiguredFeature<?, ?> configuredFeature,
             @NotNull PlacedFeature placedFeature,
             @NotNull Predicate<BiomeSelectionContext> selector) {
 
+        this(configuredFeature, placedFeature, selector, null, null);
+    }
+
+    /**
+     * Creates a {@link ConfiguredTree} that may be retro-generated and whose positions may be planned together with
+     * the other planned trees of a chunk. Only created by the builders, which put the markers into the modifiers.
+     *
+     * @param retrogenMarker The {@link RetrogenPlacementModifier} that is part of the {@code placedFeature}'s
+     *                       modifiers, or {@code null} to disable retrogen
+     * @param plannedModifier The {@link PlannedPlacementModifier} that is part of the {@code placedFeature}'s
+     *                        modifiers, or {@code null} to disable collision planning
+     */
+    ConfiguredTree(
+            @NotNull ConfiguredFeature<?, ?> configuredFeature,
+            @NotNull PlacedFeature placedFeature,
+            @NotNull Predicate<BiomeSelectionContext> selector,
+            @Nullable RetrogenPlacementModifier retrogenMarker,
+            @Nullable PlannedPlacementModifier plannedModifier) {
+
         Objects.requireNonNull(configuredFeature);
         Objects.requireNonNull(placedFeature);
 
         this.configuredFeature = configuredFeature;
+        this.factory = null;
+        this.registeredFeature = configuredFeature;
+        this.lazy = false;
         this.placedFeature = placedFeature;
         this.selector = selector;
+        this.retrogenMarker = retrogenMarker;
+        this.plannedModifier = plannedModifier;
+    }
+
+    /**
+     * Creates a lazy {@link ConfiguredTree}, whose {@link ConfiguredFeature} is only created once a biome containing
+     * the tree is decorated, a sapling grows it or {@link #getConfiguredFeature()} is called.
+     * <br><br>
+     * Lazy trees register a {@link LazyTreeFeature} in place of their {@link ConfiguredFeature}. It is encoded as
+     * nothing but the tree's {@link Identifier} when the registries are copied into a world, so starting a server
+     * doesn't create the {@link ConfiguredFeature}. Only created by the builders.
+     *
+     * @param factory Creates the {@link ConfiguredFeature}, called at most once
+     * @param modifiers The {@link PlacementModifier}s of the tree's {@link PlacedFeature}
+     * @param retrogenMarker The {@link RetrogenPlacementModifier} that is part of the {@code modifiers},
+     *                       or {@code null} to disable retrogen
+     * @param plannedModifier The {@link PlannedPlacementModifier} that is part of the {@code modifiers},
+     *                        or {@code null} to disable collision planning
+     */
+    ConfiguredTree(
+            @NotNull Supplier<ConfiguredFeature<?, ?>> factory,
+            @NotNull List<PlacementModifier> modifiers,
+            @NotNull Predicate<BiomeSelectionContext> selector,
+            @Nullable RetrogenPlacementModifier retrogenMarker,
+            @Nullable PlannedPlacementModifier plannedModifier) {
+
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(modifiers);
+
+        this.configuredFeature = null;
+        this.factory = factory;
+        this.registeredFeature = ArctreeFeatures.LAZY_TREE.configure(new LazyTreeFeatureConfig(this));
+        this.lazy = true;
+        this.placedFeature = registeredFeature.withPlacement(modifiers);
+        this.selector = selector;
+        this.retrogenMarker = retrogenMarker;
+        this.plannedModifier = plannedModifier;
     }
 
+    /**
+     * Returns the {@link ConfiguredFeature}, creating it first if this is a lazy tree that hasn't been materialized.
+     */
     public @NotNull ConfiguredFeature<?, ?> getConfiguredFeature() {
-        return configuredFeature;
+        ConfiguredFeature<?, ?> feature = configuredFeature;
+        if (feature != null) return feature;
+
+        // World generation threads may get here at the same time
+        synchronized (this) {
+            if (configuredFeature == null) {
+                configuredFeature = Objects.requireNonNull(Objects.requireNonNull(factory).get(), "Lazy tree factory returned null");
+                factory = null;
+            }
+
+            return configuredFeature;
+        }
+    }
+
+    /**
+     * Returns the {@link Identifier} the tree is registered under, or {@code null} if it hasn't been registered.
+     */
+    public @Nullable Identifier getId() {
+        return id;
     }
 
     public @NotNull PlacedFeature getPlacedFeature() {
@@ -56,13 +183,52 @@ public final class ConfiguredTree {
     }
 
     public @NotNull Pair<ConfiguredFeature<?, ?>, PlacedFeature> asPair() {
-        return new Pair<>(configuredFeature, placedFeature);
+        return new Pair<>(getConfiguredFeature(), placedFeature);
     }
 
     public @NotNull Predicate<BiomeSelectionContext> getBiomeSelector() {
         return selector;
     }
 
+    /**
+     * Whether the {@link ConfiguredFeature} of this tree is only created when it is first needed.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Whether the {@link ConfiguredFeature} of this tree exists, always {@code true} for trees that aren't lazy.
+     */
+    public boolean isMaterialized() {
+        return configuredFeature != null;
+    }
+
+    /**
+     * Whether this tree gets retro-generated into chunks that existed before it was added.
+     */
+    public boolean hasRetrogen() {
+        return retrogenMarker != null;
+    }
+
+    /**
+     * Whether the positions of this tree are planned together with the other planned trees of a chunk.
+     */
+    public boolean hasCollisionPlanning() {
+        return plannedModifier != null;
+    }
+
+    /**
+     * Checks if the biome selector has matched the given biome when the biome modifications were applied.
+     * <br><br>
+     * Only meaningful after the server has started, before that no biome has been matched yet.
+     *
+     * @param biome The {@link RegistryKey} of the biome
+     */
+    public boolean isFoundIn(@NotNull RegistryKey<Biome> biome) {
+        return matchedBiomes.contains(biome);
+    }
+
     /**
      * Automatically registers everything needed for your tree.
      *
@@ -71,8 +237,47 @@ public final class ConfiguredTree {
     public void register(@NotNull Identifier id) {
         Objects.requireNonNull(id, "ID must not be null");
 
-        Registry.register(BuiltinRegistries.CONFIGURED_FEATURE, id, configuredFeature);
+        if (REGISTERED.putIfAbsent(id, this) != null)
+            throw new RuntimeException("A tree is already registered under " + id);
+
+        this.id = id;
+
+        Registry.register(BuiltinRegistries.CONFIGURED_FEATURE, id, registeredFeature);
         Registry.register(BuiltinRegistries.PLACED_FEATURE, id, placedFeature);
-        BiomeModifications.addFeature(selector, GenerationStep.Feature.VEGETAL_DECORATION, RegistryKey.of(Registry.PLACED_FEATURE_KEY, id));
+        BiomeModifications.addFeature(this::testBiome, GenerationStep.Feature.VEGETAL_DECORATION, RegistryKey.of(Registry.PLACED_FEATURE_KEY, id));
+
+        if (retrogenMarker != null) {
+            retrogenMarker.bind(id);
+            RetrogenService.register(id, this);
+        }
+
+        if (plannedModifier != null) plannedModifier.bind(id, this);
+    }
+
+    /**
+     * Tests the biome selector, remembering every biome it matches.
+     */
+    private boolean testBiome(@NotNull BiomeSelectionContext context) {
+        if (!selector.test(context)) return false;
+
+        matchedBiomes.add(context.getBiomeKey());
+        return true;
+    }
+
+    /**
+     * Looks up a tree registered with {@link #register(Identifier)}.
+     *
+     * @param id The tree's {@link Identifier}
+     * @return The registered {@link ConfiguredTree} or {@code null} if there is none
+     */
+    public static @Nullable ConfiguredTree get(@NotNull Identifier id) {
+        return REGISTERED.get(id);
+    }
+
+    /**
+     * Returns the {@link Identifier}s of all trees registered with {@link #register(Identifier)}.
+     */
+    public static @NotNull Set<Identifier> getIds() {
+        return Collections.unmodifiableSet(REGISTERED.keySet());
     }
 }
@@ -7,25 +7,36 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Random;
+import java.util.function.Supplier;
 
 /**
  * A simple {@code SaplingGenerator} implementation that returns the tree {@code ConfiguredFeature} that you passed it.
  */
 public class SimpleSaplingGenerator extends SaplingGenerator {
-    private final @NotNull ConfiguredFeature<TreeFeatureConfig, ?> feature;
+    private final @NotNull Supplier<ConfiguredFeature<?, ?>> feature;
 
     /**
      * Creates a {@code SimpleSaplingGenerator}
      * @param feature The tree {@code ConfiguredFeature}
      */
-    @SuppressWarnings("unchecked")
     public SimpleSaplingGenerator(@NotNull ConfiguredFeature<?, ?> feature) {
-        this.feature = (ConfiguredFeature<TreeFeatureConfig, ?>) feature;
+        this.feature = () -> feature;
+    }
+
+    /**
+     * Creates a {@code SimpleSaplingGenerator} for a {@code ConfiguredTree}.
+     * <br><br>
+     * A lazy tree is only materialized once the first sapling grows.
+     * @param tree The {@code ConfiguredTree}
+     */
+    public SimpleSaplingGenerator(@NotNull ConfiguredTree tree) {
+        this.feature = tree::getConfiguredFeature;
     }
 
     @Nullable
     @Override
+    @SuppressWarnings("unchecked")
     protected ConfiguredFeature<TreeFeatureConfig, ?> getTreeFeature(Random random, boolean bees) {
-        return feature;
+        return (ConfiguredFeature<TreeFeatureConfig, ?>) feature.get();
     }
 }
@@ -0,0 +1,183 @@
+package com.redgrapefruit.arctree;
+
+import com.redgrapefruit.arctree.feature.ArctreeFeatures;
+import com.redgrapefruit.arctree.feature.StructureTreeFeatureConfig;
+import com.redgrapefruit.arctree.shape.TreeShapeLibrary;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.biome.v1.BiomeSelectionContext;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.gen.decorator.PlacementModifier;
+import net.minecraft.world.gen.stateprovider.BlockStateProvider;
+import net.minecraft.world.gen.stateprovider.SimpleBlockStateProvider;
+import net.minecraft.world.gen.treedecorator.TreeDecorator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A builder for trees made out of hand-built shapes from a {@link TreeShapeLibrary}, instead of
+ * trunk and foliage placers.
+ * <br><br>
+ * The shapes are picked at random and placed with a random rotation and mirroring.
+ */
+public final class StructureTreeBuilder {
+    /**
+     * The {@link Identifier} of the {@link TreeShapeLibrary} the shapes come from
+     */
+    @TreeBuilder.Mandatory
+    @Nullable
+    private Identifier library;
+
+    /**
+     * An {@code ImmutableList} of all {@code TreeDecorator}s used in this tree.
+     */
+    @TreeBuilder.Optional
+    @NotNull
+    private final List<TreeDecorator> decorators = new ArrayList<>();
+
+    /**
+     * The {@code BlockStateProvider} for dirt generated underneath the tree.
+     */
+    @TreeBuilder.Optional
+    @NotNull
+    private BlockStateProvider dirtProvider = SimpleBlockStateProvider.of(Blocks.DIRT.getDefaultState());
+
+    /**
+     * Place dirt forcefully.
+     */
+    @TreeBuilder.Optional
+    private boolean forceDirt = false;
+
+    /**
+     * The placement options shared with the {@link TreeBuilder}
+     */
+    private final TreePlacement placement = new TreePlacement();
+
+    /**
+     * Use {@link #create}
+     */
+    private StructureTreeBuilder() {}
+
+    /**
+     * Creates a new {@link StructureTreeBuilder}
+     *
+     * @return Created {@link StructureTreeBuilder}
+     */
+    public static @NotNull StructureTreeBuilder create() {
+        return new StructureTreeBuilder();
+    }
+
+    /**
+     * Sets the {@link TreeShapeLibrary} to take the shapes from. It only needs to be loaded by the time
+     * the tree generates.
+     */
+    @TreeBuilder.Mandatory
+    public @NotNull StructureTreeBuilder library(@NotNull Identifier library) {
+        Objects.requireNonNull(library, "Tree shape library must not be null");
+
+        this.library = library;
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder addDecorator(@NotNull TreeDecorator decorator) {
+        Objects.requireNonNull(decorator, "Tree decorator must not be null");
+
+        this.decorators.add(decorator);
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder dirtProvider(@NotNull BlockStateProvider dirtProvider) {
+        Objects.requireNonNull(dirtProvider, "Dirt provider must not be null");
+
+        this.dirtProvider = dirtProvider;
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder forceDirt() {
+        this.forceDirt = true;
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    @TreeBuilder.EffectiveWithDefaultModifiersOnly
+    public @NotNull StructureTreeBuilder spawnChance(int spawnChance) {
+        placement.spawnChance(spawnChance);
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder addPlacementModifier(@NotNull PlacementModifier modifier) {
+        placement.addPlacementModifier(modifier);
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder overrideDefaultPlacementModifiers() {
+        placement.overrideDefaultPlacementModifiers();
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder biomeSelector(@NotNull Predicate<BiomeSelectionContext> selector) {
+        placement.biomeSelector(selector);
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder retrogen() {
+        placement.retrogen();
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder lazy() {
+        placement.lazy();
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder planCollisions() {
+        placement.planCollisions();
+        return this;
+    }
+
+    @TreeBuilder.Optional
+    public @NotNull StructureTreeBuilder planCollisions(int collisionRadius) {
+        placement.planCollisions(collisionRadius);
+        return this;
+    }
+
+    /**
+     * Builds the {@link ConfiguredTree}, which you can store and then register in your {@link ModInitializer}
+     * with the {@link ConfiguredTree#register(Identifier)} method.
+     */
+    public @NotNull ConfiguredTree build() {
+        Identifier library = Objects.requireNonNull(this.library, "Mandatory value library has not been set.");
+
+        // The config is created from copies, so later changes to this builder don't affect lazy trees
+        StructureTreeFeatureConfig config = new StructureTreeFeatureConfig(library, dirtProvider, List.copyOf(decorators), forceDirt);
+
+        // The library may only be loaded after the tree is built, so its radius is looked up when planning
+        return placement.build(() -> ArctreeFeatures.STRUCTURE_TREE.configure(config), () -> {
+            TreeShapeLibrary shapes = TreeShapeLibrary.get(library);
+            return shapes != null ? shapes.getMaxRadius() : 0;
+        });
+    }
+
+    /**
+     * Builds your tree and immediately registers it. See {@link TreeBuilder#buildAndRegister(Identifier)}.
+     *
+     * @param id The tree's {@link Identifier}
+     */
+    public void buildAndRegister(@NotNull Identifier id) {
+        build().register(id);
+    }
+}
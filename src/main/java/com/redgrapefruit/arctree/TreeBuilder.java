@@ -1,19 +1,12 @@
 package com.redgrapefruit.arctree;
 
-import com.google.common.collect.Lists;
+import com.redgrapefruit.arctree.feature.ArctreeFeatures;
+import com.redgrapefruit.arctree.placement.TreeRadius;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.biome.v1.BiomeSelectionContext;
-import net.fabricmc.fabric.api.biome.v1.BiomeSelectors;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.Identifier;
-import net.minecraft.world.Heightmap;
-import net.minecraft.world.gen.decorator.HeightmapPlacementModifier;
 import net.minecraft.world.gen.decorator.PlacementModifier;
-import net.minecraft.world.gen.decorator.RarityFilterPlacementModifier;
-import net.minecraft.world.gen.decorator.SquarePlacementModifier;
-import net.minecraft.world.gen.feature.ConfiguredFeature;
-import net.minecraft.world.gen.feature.Feature;
-import net.minecraft.world.gen.feature.PlacedFeature;
 import net.minecraft.world.gen.feature.TreeFeatureConfig;
 import net.minecraft.world.gen.feature.size.FeatureSize;
 import net.minecraft.world.gen.feature.size.TwoLayersFeatureSize;
@@ -104,34 +97,9 @@ public final class TreeBuilder {
     private boolean forceDirt = false;
 
     /**
-     * The chance of spawning the tree from 0 to 10.
-     * <br><br>
-     * <b>Note:</b> this chance is <b>not</b> a percentage! It is a chance of x out of 10, for example, 3
-     * represents a chance of 3 out of 10, or 33%. Be careful!
-     */
-    @Optional
-    @EffectiveWithDefaultModifiersOnly
-    private int spawnChance = 3;
-
-    /**
-     * Custom added {@link PlacementModifier}s.
-     */
-    @Optional
-    private final List<PlacementModifier> addedPlacementModifiers = new ArrayList<>();
-
-    /**
-     * Whether to override the default applied {@link PlacementModifier}s.
-     * <br><br>
-     * If true, only {@link PlacementModifier}s from {@link #addedPlacementModifiers} will be used.
-     */
-    @Optional
-    private boolean overrideDefaultPlacementModifiers = false;
-
-    /**
-     * A Fabric Biome Selector that determines where your tree will be found.
+     * The placement options shared with the {@link StructureTreeBuilder}
      */
-    @Optional
-    private Predicate<BiomeSelectionContext> biomeSelector = BiomeSelectors.foundInOverworld();
+    private final TreePlacement placement = new TreePlacement();
 
     /**
      * Use {@link #create}
@@ -216,34 +184,56 @@ public final class TreeBuilder {
     }
 
     @Optional
+    @EffectiveWithDefaultModifiersOnly
     public @NotNull TreeBuilder spawnChance(int spawnChance) {
-        // Bound checking
-        if (spawnChance <= 0 || spawnChance > 10)
-            throw new RuntimeException("Tree spawn chance out of bounds: " + spawnChance + ". Must be between 0 (exclusive) and 10 (inclusive)");
-
-        this.spawnChance = spawnChance;
+        placement.spawnChance(spawnChance);
         return this;
     }
 
     @Optional
     public @NotNull TreeBuilder addPlacementModifier(@NotNull PlacementModifier modifier) {
-        Objects.requireNonNull(modifier, "Placement modifier must not be null");
-
-        this.addedPlacementModifiers.add(modifier);
+        placement.addPlacementModifier(modifier);
         return this;
     }
 
     @Optional
     public @NotNull TreeBuilder overrideDefaultPlacementModifiers() {
-        this.overrideDefaultPlacementModifiers = true;
+        placement.overrideDefaultPlacementModifiers();
         return this;
     }
 
     @Optional
     public @NotNull TreeBuilder biomeSelector(@NotNull Predicate<BiomeSelectionContext> selector) {
-        Objects.requireNonNull(selector, "Biome selector must not be null");
+        placement.biomeSelector(selector);
+        return this;
+    }
 
-        this.biomeSelector = selector;
+    @Optional
+    public @NotNull TreeBuilder retrogen() {
+        placement.retrogen();
+        return this;
+    }
+
+    @Optional
+    public @NotNull TreeBuilder lazy() {
+        placement.lazy();
+        return this;
+    }
+
+    /**
+     * Plans the tree's positions together with all other planned trees of a chunk. The collision radius is estimated
+     * from the placers, which only accounts for how far vanilla placers grow past their configured radius. Set the
+     * radius with {@link #planCollisions(int)} for trees using other placers.
+     */
+    @Optional
+    public @NotNull TreeBuilder planCollisions() {
+        placement.planCollisions();
+        return this;
+    }
+
+    @Optional
+    public @NotNull TreeBuilder planCollisions(int collisionRadius) {
+        placement.planCollisions(collisionRadius);
         return this;
     }
 
@@ -258,7 +248,17 @@ public final class TreeBuilder {
         verifyMandatory(trunkPlacer, "trunkPlacer");
         verifyMandatory(foliagePlacer, "foliagePlacer");
 
-        // Create TreeFeatureConfig.Builder
+        // Lazy trees create their config from a copy, so later changes to this builder don't affect them
+        TreeBuilder snapshot = copy();
+        int radius = TreeRadius.estimate(trunkPlacer, foliagePlacer);
+
+        return placement.build(() -> ArctreeFeatures.TREE.configure(snapshot.createConfig()), () -> radius);
+    }
+
+    /**
+     * Creates the {@link TreeFeatureConfig} out of the set values
+     */
+    private @NotNull TreeFeatureConfig createConfig() {
         TreeFeatureConfig.Builder configBuilder = new TreeFeatureConfig.Builder
                 (trunkProvider, trunkPlacer, foliageProvider, foliagePlacer, minimumSize);
 
@@ -267,22 +267,26 @@ public final class TreeBuilder {
         if (forceDirt) configBuilder.forceDirt();
         if (ignoreVines) configBuilder.ignoreVines();
 
-        // Set up placement modifiers
-        List<PlacementModifier> modifiers = Lists.newArrayList(
-                RarityFilterPlacementModifier.of(spawnChance), // chance of the tree spawning
-                SquarePlacementModifier.of(), // spread horizontally
-                HeightmapPlacementModifier.of(Heightmap.Type.MOTION_BLOCKING) // in what heights can this tree spawn
-        );
-
-        if (overrideDefaultPlacementModifiers) modifiers.clear();
-
-        modifiers.addAll(addedPlacementModifiers);
-
-        // Create output
-        ConfiguredFeature<?, ?> configured = Feature.TREE.configure(configBuilder.build());
-        PlacedFeature placed = configured.withPlacement(modifiers);
+        return configBuilder.build();
+    }
 
-        return new ConfiguredTree(configured, placed, biomeSelector);
+    /**
+     * Copies the values needed by {@link #createConfig()} into a new {@link TreeBuilder}
+     */
+    private @NotNull TreeBuilder copy() {
+        TreeBuilder copy = new TreeBuilder();
+
+        copy.trunkProvider = trunkProvider;
+        copy.foliageProvider = foliageProvider;
+        copy.trunkPlacer = trunkPlacer;
+        copy.foliagePlacer = foliagePlacer;
+        copy.minimumSize = minimumSize;
+        copy.decorators.addAll(decorators);
+        copy.dirtProvider = dirtProvider;
+        copy.ignoreVines = ignoreVines;
+        copy.forceDirt = forceDirt;
+
+        return copy;
     }
 
     /**
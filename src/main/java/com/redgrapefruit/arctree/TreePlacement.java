@@ -0,0 +1,171 @@
+package com.redgrapefruit.arctree;
+
+import com.google.common.collect.Lists;
+import com.redgrapefruit.arctree.placement.PlannedPlacementModifier;
+import com.redgrapefruit.arctree.placement.SurfacePlacementModifier;
+import com.redgrapefruit.arctree.retrogen.RetrogenPlacementModifier;
+import net.fabricmc.fabric.api.biome.v1.BiomeSelectionContext;
+import net.fabricmc.fabric.api.biome.v1.BiomeSelectors;
+import net.minecraft.world.gen.decorator.PlacementModifier;
+import net.minecraft.world.gen.decorator.RarityFilterPlacementModifier;
+import net.minecraft.world.gen.decorator.SquarePlacementModifier;
+import net.minecraft.world.gen.feature.ConfiguredFeature;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The placement options shared by the {@link TreeBuilder} and the {@link StructureTreeBuilder}, and the pipeline
+ * that turns them and a tree's {@link ConfiguredFeature} into a {@link ConfiguredTree}.
+ */
+final class TreePlacement {
+    /**
+     * The chance of spawning the tree from 0 to 10.
+     * <br><br>
+     * <b>Note:</b> this chance is <b>not</b> a percentage! It is a chance of x out of 10, for example, 3
+     * represents a chance of 3 out of 10, or 33%. Be careful!
+     */
+    @TreeBuilder.Optional
+    @TreeBuilder.EffectiveWithDefaultModifiersOnly
+    private int spawnChance = 3;
+
+    /**
+     * Custom added {@link PlacementModifier}s.
+     */
+    @TreeBuilder.Optional
+    private final List<PlacementModifier> addedPlacementModifiers = new ArrayList<>();
+
+    /**
+     * Whether to override the default applied {@link PlacementModifier}s.
+     * <br><br>
+     * If true, only {@link PlacementModifier}s from {@link #addedPlacementModifiers} will be used.
+     */
+    @TreeBuilder.Optional
+    private boolean overrideDefaultPlacementModifiers = false;
+
+    /**
+     * A Fabric Biome Selector that determines where your tree will be found.
+     */
+    @TreeBuilder.Optional
+    private Predicate<BiomeSelectionContext> biomeSelector = BiomeSelectors.foundInOverworld();
+
+    /**
+     * Whether to retro-generate the tree into chunks that existed before it was added.
+     * <br><br>
+     * {@code false} by default.
+     */
+    @TreeBuilder.Optional
+    private boolean retrogen = false;
+
+    /**
+     * Whether to only create the tree's {@code ConfiguredFeature} when it is first needed. Useful for trees that only
+     * appear in some worlds, like dimension-specific trees.
+     * <br><br>
+     * {@code false} by default.
+     */
+    @TreeBuilder.Optional
+    private boolean lazy = false;
+
+    /**
+     * Whether to plan the tree's positions together with all other planned trees of a chunk, so that trees which
+     * would grow into each other are dropped before their placers run.
+     * <br><br>
+     * {@code false} by default.
+     */
+    @TreeBuilder.Optional
+    private boolean planCollisions = false;
+
+    /**
+     * The horizontal radius the tree needs for itself when collisions are planned.
+     * <br><br>
+     * {@code -1} by default, which uses the default radius of the builder.
+     */
+    @TreeBuilder.Optional
+    private int collisionRadius = -1;
+
+    void spawnChance(int spawnChance) {
+        // Bound checking
+        if (spawnChance <= 0 || spawnChance > 10)
+            throw new RuntimeException("Tree spawn chance out of bounds: " + spawnChance + ". Must be between 0 (exclusive) and 10 (inclusive)");
+
+        this.spawnChance = spawnChance;
+    }
+
+    void addPlacementModifier(@NotNull PlacementModifier modifier) {
+        Objects.requireNonNull(modifier, "Placement modifier must not be null");
+
+        this.addedPlacementModifiers.add(modifier);
+    }
+
+    void overrideDefaultPlacementModifiers() {
+        this.overrideDefaultPlacementModifiers = true;
+    }
+
+    void biomeSelector(@NotNull Predicate<BiomeSelectionContext> selector) {
+        Objects.requireNonNull(selector, "Biome selector must not be null");
+
+        this.biomeSelector = selector;
+    }
+
+    void retrogen() {
+        this.retrogen = true;
+    }
+
+    void lazy() {
+        this.lazy = true;
+    }
+
+    void planCollisions() {
+        this.planCollisions = true;
+    }
+
+    void planCollisions(int collisionRadius) {
+        // Bound checking
+        if (collisionRadius < 0)
+            throw new RuntimeException("Tree collision radius out of bounds: " + collisionRadius + ". Must not be negative");
+
+        this.planCollisions = true;
+        this.collisionRadius = collisionRadius;
+    }
+
+    /**
+     * Sets up the placement modifiers and creates the {@link ConfiguredTree}.
+     *
+     * @param factory Creates the tree's {@link ConfiguredFeature}, right away or when a lazy tree is first needed.
+     *                It must not depend on later changes to the builder
+     * @param defaultCollisionRadius The collision radius used if none has been set, asked for when planning
+     */
+    @NotNull ConfiguredTree build(@NotNull Supplier<ConfiguredFeature<?, ?>> factory, @NotNull IntSupplier defaultCollisionRadius) {
+        List<PlacementModifier> modifiers = Lists.newArrayList(
+                RarityFilterPlacementModifier.of(spawnChance), // chance of the tree spawning
+                SquarePlacementModifier.of(), // spread horizontally
+                SurfacePlacementModifier.of() // on the motion blocking surface, shared with other trees in the chunk
+        );
+
+        if (overrideDefaultPlacementModifiers) modifiers.clear();
+
+        modifiers.addAll(addedPlacementModifiers);
+
+        // Planned trees run all of their modifiers inside the planner
+        PlannedPlacementModifier plannedModifier = null;
+        if (planCollisions) {
+            int radius = collisionRadius;
+            plannedModifier = new PlannedPlacementModifier(modifiers, radius >= 0 ? () -> radius : defaultCollisionRadius);
+            modifiers = Lists.newArrayList(plannedModifier);
+        }
+
+        // The retrogen marker must see the chunk origin, so it goes before everything else
+        RetrogenPlacementModifier retrogenMarker = retrogen ? new RetrogenPlacementModifier() : null;
+        if (retrogenMarker != null) modifiers.add(0, retrogenMarker);
+
+        if (lazy) return new ConfiguredTree(factory, modifiers, biomeSelector, retrogenMarker, plannedModifier);
+
+        ConfiguredFeature<?, ?> configured = factory.get();
+        return new ConfiguredTree(configured, configured.withPlacement(modifiers), biomeSelector, retrogenMarker, plannedModifier);
+    }
+}
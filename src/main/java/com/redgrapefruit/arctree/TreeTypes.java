@@ -7,6 +7,9 @@ import net.minecraft.util.math.floatprovider.FloatProvider;
 import net.minecraft.util.math.floatprovider.FloatProviderType;
 import net.minecraft.util.math.intprovider.IntProvider;
 import net.minecraft.util.math.intprovider.IntProviderType;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.gen.decorator.PlacementModifier;
+import net.minecraft.world.gen.decorator.PlacementModifierType;
 import net.minecraft.world.gen.foliage.FoliagePlacer;
 import net.minecraft.world.gen.foliage.FoliagePlacerType;
 import net.minecraft.world.gen.heightprovider.HeightProvider;
@@ -107,6 +110,18 @@ public final class TreeTypes {
         return FloatProviderType.register(id.toString(), codec);
     }
 
+    /**
+     * Creates a {@link PlacementModifierType}, registers and returns it.
+     */
+    @NotNull
+    public static <T extends PlacementModifier> PlacementModifierType<T> placementModifierType(@NotNull Identifier id, @NotNull Codec<T> codec) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(codec);
+
+        PlacementModifierType<T> type = () -> codec;
+        return Registry.register(Registry.PLACEMENT_MODIFIER_TYPE, id, type);
+    }
+
     /**
      * Creates a {@link HeightProviderType}, registers and returns it.
      */
@@ -0,0 +1,43 @@
+package com.redgrapefruit.arctree.feature;
+
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.gen.feature.Feature;
+import net.minecraft.world.gen.feature.TreeFeatureConfig;
+
+/**
+ * The {@link Feature}s that Arctree registers. They are registered during mod initialization by {@link #init()},
+ * since the feature registry must not be written to from world generation threads.
+ */
+public final class ArctreeFeatures {
+    /**
+     * The tree {@link Feature} used by all trees built with the {@code TreeBuilder}
+     */
+    public static final ArctreeTreeFeature TREE = Registry.register(
+            Registry.FEATURE,
+            new Identifier("arctree", "tree"),
+            new ArctreeTreeFeature(TreeFeatureConfig.CODEC));
+
+    /**
+     * The tree {@link Feature} used by all trees built with the {@code StructureTreeBuilder}
+     */
+    public static final StructureTreeFeature STRUCTURE_TREE = Registry.register(
+            Registry.FEATURE,
+            new Identifier("arctree", "structure_tree"),
+            new StructureTreeFeature(StructureTreeFeatureConfig.CODEC));
+
+    /**
+     * The {@link Feature} registered in place of lazy trees until they are materialized
+     */
+    public static final LazyTreeFeature LAZY_TREE = Registry.register(
+            Registry.FEATURE,
+            new Identifier("arctree", "lazy_tree"),
+            new LazyTreeFeature(LazyTreeFeatureConfig.CODEC));
+
+    private ArctreeFeatures() {}
+
+    /**
+     * Registers the {@link Feature}s by loading this class. Called by the {@code ArctreeMod}.
+     */
+    public static void init() {}
+}
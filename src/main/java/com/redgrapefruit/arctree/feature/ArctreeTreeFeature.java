@@ -0,0 +1,41 @@
+package com.redgrapefruit.arctree.feature;
+
+import com.mojang.serialization.Codec;
+import com.redgrapefruit.arctree.ArctreeRandom;
+import com.redgrapefruit.arctree.placement.SurfacePlacementModifier;
+import net.minecraft.world.gen.feature.Feature;
+import net.minecraft.world.gen.feature.TreeFeatureConfig;
+import net.minecraft.world.gen.feature.util.FeatureContext;
+
+/**
+ * The tree {@link Feature} of Arctree. It places trees exactly like {@link Feature#TREE}, on the origin picked by the
+ * {@link SurfacePlacementModifier}.
+ * <br><br>
+ * While the tree is placed, obstruction checks are answered by the {@link PaletteObstructionCheck} where possible,
+ * and the tree draws its randomness from an {@link ArctreeRandom}.
+ */
+public class ArctreeTreeFeature extends Feature<TreeFeatureConfig> {
+    public ArctreeTreeFeature(Codec<TreeFeatureConfig> codec) {
+        super(codec);
+    }
+
+    @Override
+    public boolean generate(FeatureContext<TreeFeatureConfig> context) {
+        // Placers, providers and decorators draw from a non-atomic random from here on
+        FeatureContext<TreeFeatureConfig> arctreeContext = new FeatureContext<>(
+                context.getFeature(),
+                context.getWorld(),
+                context.getGenerator(),
+                ArctreeRandom.of(context.getRandom()),
+                context.getOrigin(),
+                context.getConfig());
+
+        PaletteObstructionCheck.begin(context.getWorld());
+
+        try {
+            return Feature.TREE.generate(arctreeContext);
+        } finally {
+            PaletteObstructionCheck.end();
+        }
+    }
+}
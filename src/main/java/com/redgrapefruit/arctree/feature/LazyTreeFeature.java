@@ -0,0 +1,25 @@
+package com.redgrapefruit.arctree.feature;
+
+import com.mojang.serialization.Codec;
+import com.redgrapefruit.arctree.ConfiguredTree;
+import net.minecraft.world.gen.feature.Feature;
+import net.minecraft.world.gen.feature.util.FeatureContext;
+
+/**
+ * Stands in for the {@code ConfiguredFeature} of a lazy {@link ConfiguredTree} in the registries, and materializes
+ * the tree when it is first generated.
+ */
+public class LazyTreeFeature extends Feature<LazyTreeFeatureConfig> {
+    public LazyTreeFeature(Codec<LazyTreeFeatureConfig> codec) {
+        super(codec);
+    }
+
+    @Override
+    public boolean generate(FeatureContext<LazyTreeFeatureConfig> context) {
+        return context.getConfig().tree.getConfiguredFeature().generate(
+                context.getWorld(),
+                context.getGenerator(),
+                context.getRandom(),
+                context.getOrigin());
+    }
+}
@@ -0,0 +1,36 @@
+package com.redgrapefruit.arctree.feature;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import com.redgrapefruit.arctree.ConfiguredTree;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.gen.feature.FeatureConfig;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The config of a {@link LazyTreeFeature}, referencing a registered {@link ConfiguredTree} by its {@link Identifier}.
+ * <br><br>
+ * Only the {@link Identifier} is encoded, so copying the feature into a world's registries never materializes the tree.
+ */
+public class LazyTreeFeatureConfig implements FeatureConfig {
+    private static final Codec<ConfiguredTree> TREE_CODEC = Identifier.CODEC.flatXmap(
+            id -> {
+                ConfiguredTree tree = ConfiguredTree.get(id);
+                return tree != null ? DataResult.success(tree) : DataResult.error("No tree is registered under " + id);
+            },
+            tree -> {
+                Identifier id = tree.getId();
+                return id != null ? DataResult.success(id) : DataResult.error("Lazy tree has not been registered");
+            });
+
+    public static final Codec<LazyTreeFeatureConfig> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            TREE_CODEC.fieldOf("tree").forGetter(config -> config.tree)
+    ).apply(instance, LazyTreeFeatureConfig::new));
+
+    public final @NotNull ConfiguredTree tree;
+
+    public LazyTreeFeatureConfig(@NotNull ConfiguredTree tree) {
+        this.tree = tree;
+    }
+}
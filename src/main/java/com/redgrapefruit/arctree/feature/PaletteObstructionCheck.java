@@ -0,0 +1,141 @@
+package com.redgrapefruit.arctree.feature;
+
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.Material;
+import net.minecraft.tag.BlockTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.StructureWorldAccess;
+import net.minecraft.world.TestableWorld;
+import net.minecraft.world.chunk.ChunkSection;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Answers the obstruction checks of {@code TreeFeature} for whole chunk sections at once, by looking at the
+ * sections' palettes instead of the individual blocks.
+ * <br><br>
+ * A section without any blocks is accepted without reading the block. While the tree's height is being checked, no
+ * blocks are placed, so sections whose palette only holds replaceable states (air, leaves and replaceable plants) are
+ * remembered as well. Everything else falls back to the usual per-block checks. The section of the last check is kept
+ * at hand, since consecutive checks mostly fall into the same section.
+ * <br><br>
+ * Only active on the thread placing an Arctree tree, between {@link #begin} and {@link #end}.
+ */
+@ApiStatus.Internal
+public final class PaletteObstructionCheck {
+    private static final ThreadLocal<PaletteObstructionCheck> CURRENT = new ThreadLocal<>();
+
+    private static final byte MIXED = 0;
+    private static final byte REPLACEABLE = 1;
+    private static final byte REPLACEABLE_WITHOUT_VINES = 2;
+    private static final byte UNKNOWN = -1;
+
+    private final @NotNull StructureWorldAccess world;
+
+    /**
+     * Section classifications, only filled while the height is being checked
+     */
+    private final Long2ByteMap sections = new Long2ByteOpenHashMap();
+    private boolean scanning = false;
+
+    /**
+     * The section of the last check and its classification, {@link #UNKNOWN} until it has been classified
+     */
+    private long lastKey = Long.MIN_VALUE;
+    private @Nullable ChunkSection lastSection;
+    private byte lastClassification = UNKNOWN;
+
+    private PaletteObstructionCheck(@NotNull StructureWorldAccess world) {
+        this.world = world;
+        this.sections.defaultReturnValue(UNKNOWN);
+    }
+
+    public static void begin(@NotNull StructureWorldAccess world) {
+        CURRENT.set(new PaletteObstructionCheck(world));
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Marks the start of the pure height check, during which section palettes may be remembered.
+     */
+    public static void beginScan() {
+        PaletteObstructionCheck check = CURRENT.get();
+        if (check != null) check.scanning = true;
+    }
+
+    /**
+     * Marks the end of the height check, after which blocks get placed and remembered palettes go stale.
+     */
+    public static void endScan() {
+        PaletteObstructionCheck check = CURRENT.get();
+        if (check == null) return;
+
+        check.scanning = false;
+        check.sections.clear();
+        check.lastClassification = UNKNOWN;
+    }
+
+    /**
+     * @return {@code true} if the position is known to be replaceable by a tree without reading the block
+     */
+    public static boolean isReplaceable(@NotNull TestableWorld world, @NotNull BlockPos pos) {
+        PaletteObstructionCheck check = CURRENT.get();
+        return check != null && check.world == world && check.classify(pos) != MIXED;
+    }
+
+    /**
+     * @return {@code true} if the position is known not to hold a vine without reading the block
+     */
+    public static boolean isFreeOfVines(@NotNull TestableWorld world, @NotNull BlockPos pos) {
+        PaletteObstructionCheck check = CURRENT.get();
+        return check != null && check.world == world && check.classify(pos) == REPLACEABLE_WITHOUT_VINES;
+    }
+
+    private byte classify(@NotNull BlockPos pos) {
+        if (world.isOutOfHeightLimit(pos)) return MIXED;
+
+        long key = ChunkSectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+
+        if (key != lastKey) {
+            lastKey = key;
+            lastSection = world.getChunk(pos.getX() >> 4, pos.getZ() >> 4).getSectionArray()[world.getSectionIndex(pos.getY())];
+            lastClassification = UNKNOWN;
+        }
+
+        // Blocks placed after the height check may fill the section, so emptiness is read every time
+        ChunkSection section = lastSection;
+        if (section == null || section.isEmpty()) return REPLACEABLE_WITHOUT_VINES;
+        if (!scanning) return MIXED;
+
+        if (lastClassification != UNKNOWN) return lastClassification;
+
+        byte classification = sections.get(key);
+
+        if (classification == UNKNOWN) {
+            if (section.hasAny(state -> !isSafelyReplaceable(state))) classification = MIXED;
+            else if (section.hasAny(state -> state.isOf(Blocks.VINE))) classification = REPLACEABLE;
+            else classification = REPLACEABLE_WITHOUT_VINES;
+
+            sections.put(key, classification);
+        }
+
+        lastClassification = classification;
+        return classification;
+    }
+
+    /**
+     * A subset of the states {@code TreeFeature#canReplace} accepts. It must never accept more, since palette
+     * entries are taken as proof for every block in the section.
+     */
+    private static boolean isSafelyReplaceable(@NotNull BlockState state) {
+        return state.isAir() || state.isIn(BlockTags.LEAVES) || state.getMaterial() == Material.REPLACEABLE_PLANT;
+    }
+}
@@ -0,0 +1,221 @@
+package com.redgrapefruit.arctree.feature;
+
+import com.mojang.serialization.Codec;
+import com.redgrapefruit.arctree.ArctreeRandom;
+import com.redgrapefruit.arctree.placement.SurfaceCache;
+import com.redgrapefruit.arctree.shape.TreeShapeLibrary;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.tag.BlockTags;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.HeightLimitView;
+import net.minecraft.world.StructureWorldAccess;
+import net.minecraft.world.TestableWorld;
+import net.minecraft.world.gen.feature.Feature;
+import net.minecraft.world.gen.feature.TreeFeature;
+import net.minecraft.world.gen.feature.util.FeatureContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Places a random hand-built shape out of a {@link TreeShapeLibrary}, randomly rotated and mirrored around the bottom
+ * of its trunk.
+ * <br><br>
+ * Like {@link Feature#TREE}, the tree needs soil to grow on (unless dirt is forced), may only replace blocks that
+ * trees are allowed to replace, turns the ground under its trunk into dirt and runs its decorators once placed.
+ */
+public class StructureTreeFeature extends Feature<StructureTreeFeatureConfig> {
+    private static final int PLACE_FLAGS = Block.NOTIFY_ALL | Block.FORCE_STATE;
+
+    public StructureTreeFeature(Codec<StructureTreeFeatureConfig> codec) {
+        super(codec);
+    }
+
+    @Override
+    public boolean generate(FeatureContext<StructureTreeFeatureConfig> context) {
+        StructureWorldAccess world = context.getWorld();
+        BlockPos origin = context.getOrigin();
+
+        if (!hasGround(world, origin, context.getConfig())) return false;
+
+        PaletteObstructionCheck.begin(world);
+
+        try {
+            return place(
+                    world,
+                    world,
+                    (pos, state) -> {
+                        world.setBlockState(pos, state, PLACE_FLAGS);
+                        SurfaceCache.markDirty(world, pos);
+                    },
+                    ArctreeRandom.of(context.getRandom()),
+                    origin,
+                    context.getConfig());
+        } finally {
+            PaletteObstructionCheck.end();
+        }
+    }
+
+    /**
+     * Places a random shape of the tree's library through the {@code replacer}, without checking the ground.
+     * Used by {@link #generate} and to compute trees against a world snapshot.
+     *
+     * @param world The world to test blocks in
+     * @param heightLimit The height limit of the world
+     * @param replacer Places a block
+     * @return {@code true} if the tree was placed
+     */
+    public static boolean place(
+            @NotNull TestableWorld world,
+            @NotNull HeightLimitView heightLimit,
+            @NotNull BiConsumer<BlockPos, BlockState> replacer,
+            @NotNull ArctreeRandom random,
+            @NotNull BlockPos origin,
+            @NotNull StructureTreeFeatureConfig config) {
+
+        TreeShapeLibrary library = TreeShapeLibrary.get(config.library);
+        if (library == null || library.getShapeCount() == 0) return false;
+
+        int shape = random.nextInt(library.getShapeCount());
+        BlockRotation rotation = BlockRotation.random(random);
+        BlockMirror mirror = random.nextBoolean() ? BlockMirror.FRONT_BACK : BlockMirror.NONE;
+
+        // Shapes that couldn't be resolved are empty
+        if (library.getBlockCount(shape) == 0) return false;
+
+        if (!canPlace(world, heightLimit, library, shape, origin, rotation, mirror)) return false;
+
+        List<BlockPos> logs = new ArrayList<>();
+        List<BlockPos> leaves = new ArrayList<>();
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        for (int block = 0; block < library.getBlockCount(shape); block++) {
+            int packed = library.getPackedBlock(shape, block);
+            transform(packed, origin, rotation, mirror, pos);
+
+            BlockState state = library.getState(shape, block).mirror(mirror).rotate(rotation);
+            replacer.accept(pos.toImmutable(), state);
+
+            if (state.isIn(BlockTags.LOGS)) {
+                logs.add(pos.toImmutable());
+
+                // The ground under the bottom of the trunk turns into dirt, just like under regular trees, unless the
+                // shape has its own block there, which was placed before this log
+                int x = TreeShapeLibrary.unpackX(packed);
+                int z = TreeShapeLibrary.unpackZ(packed);
+
+                if (TreeShapeLibrary.unpackY(packed) == 0 && !library.hasBlock(shape, x, -1, z)) {
+                    setToDirt(world, replacer, random, pos.down(), config);
+                }
+            } else if (state.isIn(BlockTags.LEAVES)) {
+                leaves.add(pos.toImmutable());
+            }
+        }
+
+        if (!config.decorators.isEmpty()) {
+            logs.sort(Comparator.comparingInt(Vec3i::getY));
+            leaves.sort(Comparator.comparingInt(Vec3i::getY));
+            config.decorators.forEach(decorator -> decorator.generate(world, replacer, random, logs, leaves));
+        }
+
+        return true;
+    }
+
+    private boolean hasGround(@NotNull StructureWorldAccess world, @NotNull BlockPos origin, @NotNull StructureTreeFeatureConfig config) {
+        if (config.forceDirt) return true;
+
+        SurfaceCache cache = SurfaceCache.get(world, origin);
+
+        if (cache != null && origin.getY() == cache.getSurfaceY(origin.getX(), origin.getZ())) {
+            return cache.getGround(origin.getX(), origin.getZ()) == SurfaceCache.Ground.SOIL
+                    && !cache.hasFluid(origin.getX(), origin.getZ());
+        }
+
+        return isSoil(world, origin.down());
+    }
+
+    /**
+     * Checks every block of the shape before anything is placed. Blocks below the anchor, like roots,
+     * may also replace soil.
+     */
+    private static boolean canPlace(
+            @NotNull TestableWorld world,
+            @NotNull HeightLimitView heightLimit,
+            @NotNull TreeShapeLibrary library,
+            int shape,
+            @NotNull BlockPos origin,
+            @NotNull BlockRotation rotation,
+            @NotNull BlockMirror mirror) {
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        PaletteObstructionCheck.beginScan();
+
+        try {
+            for (int block = 0; block < library.getBlockCount(shape); block++) {
+                int packed = library.getPackedBlock(shape, block);
+                transform(packed, origin, rotation, mirror, pos);
+
+                if (heightLimit.isOutOfHeightLimit(pos)) return false;
+                if (TreeFeature.canReplace(world, pos)) continue;
+                if (TreeShapeLibrary.unpackY(packed) < 0 && world.testBlockState(pos, Feature::isSoil)) continue;
+
+                return false;
+            }
+
+            return true;
+        } finally {
+            PaletteObstructionCheck.endScan();
+        }
+    }
+
+    /**
+     * Moves a packed block to its place in the world, mirroring it first and then rotating it, like structures do.
+     */
+    private static void transform(int packed, @NotNull BlockPos origin, @NotNull BlockRotation rotation, @NotNull BlockMirror mirror, @NotNull BlockPos.Mutable pos) {
+        int x = TreeShapeLibrary.unpackX(packed);
+        int z = TreeShapeLibrary.unpackZ(packed);
+
+        if (mirror == BlockMirror.FRONT_BACK) x = -x;
+
+        int rotatedX = switch (rotation) {
+            case NONE -> x;
+            case CLOCKWISE_90 -> -z;
+            case CLOCKWISE_180 -> -x;
+            case COUNTERCLOCKWISE_90 -> z;
+        };
+        int rotatedZ = switch (rotation) {
+            case NONE -> z;
+            case CLOCKWISE_90 -> x;
+            case CLOCKWISE_180 -> -z;
+            case COUNTERCLOCKWISE_90 -> -x;
+        };
+
+        pos.set(origin.getX() + rotatedX, origin.getY() + TreeShapeLibrary.unpackY(packed), origin.getZ() + rotatedZ);
+    }
+
+    /**
+     * Same as {@code TrunkPlacer#setToDirt}: grass and mycelium, and anything that isn't soil, become dirt
+     */
+    private static void setToDirt(
+            @NotNull TestableWorld world,
+            @NotNull BiConsumer<BlockPos, BlockState> replacer,
+            @NotNull ArctreeRandom random,
+            @NotNull BlockPos pos,
+            @NotNull StructureTreeFeatureConfig config) {
+
+        boolean keep = world.testBlockState(pos, state -> isSoil(state) && !state.isOf(Blocks.GRASS_BLOCK) && !state.isOf(Blocks.MYCELIUM));
+
+        if (config.forceDirt || !keep) {
+            replacer.accept(pos.toImmutable(), config.dirtProvider.getBlockState(random, pos));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.redgrapefruit.arctree.feature;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import com.redgrapefruit.arctree.shape.TreeShapeLibrary;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.gen.feature.FeatureConfig;
+import net.minecraft.world.gen.stateprovider.BlockStateProvider;
+import net.minecraft.world.gen.treedecorator.TreeDecorator;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * The config of a {@link StructureTreeFeature}, referencing a {@link TreeShapeLibrary} by its {@link Identifier}.
+ */
+public class StructureTreeFeatureConfig implements FeatureConfig {
+    public static final Codec<StructureTreeFeatureConfig> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            Identifier.CODEC.fieldOf("library").forGetter(config -> config.library),
+            BlockStateProvider.TYPE_CODEC.fieldOf("dirt_provider").forGetter(config -> config.dirtProvider),
+            TreeDecorator.TYPE_CODEC.listOf().fieldOf("decorators").forGetter(config -> config.decorators),
+            Codec.BOOL.fieldOf("force_dirt").orElse(false).forGetter(config -> config.forceDirt)
+    ).apply(instance, StructureTreeFeatureConfig::new));
+
+    public final @NotNull Identifier library;
+    public final @NotNull BlockStateProvider dirtProvider;
+    public final @NotNull List<TreeDecorator> decorators;
+    public final boolean forceDirt;
+
+    public StructureTreeFeatureConfig(
+            @NotNull Identifier library,
+            @NotNull BlockStateProvider dirtProvider,
+            @NotNull List<TreeDecorator> decorators,
+            boolean forceDirt) {
+
+        this.library = library;
+        this.dirtProvider = dirtProvider;
+        this.decorators = decorators;
+        this.forceDirt = forceDirt;
+    }
+}
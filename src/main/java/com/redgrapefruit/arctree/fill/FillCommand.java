@@ -0,0 +1,143 @@
+package com.redgrapefruit.arctree.fill;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.FloatArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import com.redgrapefruit.arctree.ConfiguredTree;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.command.argument.IdentifierArgumentType;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.LiteralText;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * The {@code /arctree} command:
+ * <ul>
+ *     <li>{@code /arctree fill <from> <to> <tree> <density>} fills a region with a tree, see {@link FillService}</li>
+ *     <li>{@code /arctree status} lists the running fills</li>
+ *     <li>{@code /arctree cancel [id]} cancels one or all running fills</li>
+ * </ul>
+ */
+public final class FillCommand {
+    private static final DynamicCommandExceptionType FAILED = new DynamicCommandExceptionType(message -> new LiteralText(String.valueOf(message)));
+    private static final SimpleCommandExceptionType NOT_RUNNING = new SimpleCommandExceptionType(new LiteralText("No such fill is running"));
+
+    private FillCommand() {}
+
+    public static void register(@NotNull CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("arctree")
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(CommandManager.literal("fill")
+                        .then(CommandManager.argument("from", BlockPosArgumentType.blockPos())
+                                .then(CommandManager.argument("to", BlockPosArgumentType.blockPos())
+                                        .then(CommandManager.argument("tree", IdentifierArgumentType.identifier())
+                                                .suggests((context, builder) -> CommandSource.suggestIdentifiers(ConfiguredTree.getIds(), builder))
+                                                .then(CommandManager.argument("density", FloatArgumentType.floatArg(Float.MIN_VALUE, 1.0f))
+                                                        .executes(FillCommand::fill))))))
+                .then(CommandManager.literal("status")
+                        .executes(FillCommand::status))
+                .then(CommandManager.literal("cancel")
+                        .executes(FillCommand::cancelAll)
+                        .then(CommandManager.argument("id", IntegerArgumentType.integer(1))
+                                .executes(FillCommand::cancel))));
+    }
+
+    private static int fill(@NotNull CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        // The region doesn't need to be loaded, the fill loads it tile by tile
+        BlockPos from = BlockPosArgumentType.getBlockPos(context, "from");
+        BlockPos to = BlockPosArgumentType.getBlockPos(context, "to");
+        Identifier tree = IdentifierArgumentType.getIdentifier(context, "tree");
+        float density = FloatArgumentType.getFloat(context, "density");
+
+        FillTask task;
+        try {
+            task = FillService.fill(source.getWorld(), BlockBox.create(from, to), tree, density, new ProgressReporter(source));
+        } catch (RuntimeException e) {
+            throw FAILED.create(e.getMessage());
+        }
+
+        source.sendFeedback(new LiteralText("Started filling with " + tree + " as fill #" + task.getId()), true);
+        return task.getId();
+    }
+
+    private static int status(@NotNull CommandContext<ServerCommandSource> context) {
+        List<FillTask> tasks = FillService.getTasks();
+
+        if (tasks.isEmpty()) {
+            context.getSource().sendFeedback(new LiteralText("No fills are running"), false);
+            return 0;
+        }
+
+        for (FillTask task : tasks) {
+            context.getSource().sendFeedback(new LiteralText(describe(task)), false);
+        }
+
+        return tasks.size();
+    }
+
+    private static int cancel(@NotNull CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        FillTask task = FillService.getTask(IntegerArgumentType.getInteger(context, "id"));
+        if (task == null) throw NOT_RUNNING.create();
+
+        task.cancel();
+        return 1;
+    }
+
+    private static int cancelAll(@NotNull CommandContext<ServerCommandSource> context) {
+        int count = FillService.getTasks().size();
+        FillService.cancelAll();
+
+        context.getSource().sendFeedback(new LiteralText("Cancelled " + count + " fill(s)"), true);
+        return count;
+    }
+
+    private static @NotNull String describe(@NotNull FillTask task) {
+        return String.format(
+                "Fill #%d of %s: %d%%, %d trees, %d blocks written, %d skipped",
+                task.getId(),
+                task.getTree(),
+                (int) (task.getProgress() * 100),
+                task.getGrownTrees(),
+                task.getWrittenBlocks(),
+                task.getSkippedBlocks());
+    }
+
+    /**
+     * Reports every tenth of the progress to whoever started the fill
+     */
+    private static final class ProgressReporter implements FillTask.Listener {
+        private final @NotNull ServerCommandSource source;
+        private int reportedTenths = 0;
+
+        private ProgressReporter(@NotNull ServerCommandSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public void progress(@NotNull FillTask task) {
+            int tenths = (int) (task.getProgress() * 10);
+            if (tenths <= reportedTenths || tenths >= 10) return;
+
+            reportedTenths = tenths;
+            source.sendFeedback(new LiteralText(describe(task)), false);
+        }
+
+        @Override
+        public void finished(@NotNull FillTask task) {
+            String state = task.isCancelled() ? "Cancelled" : "Finished";
+            source.sendFeedback(new LiteralText(state + " " + describe(task)), true);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.redgrapefruit.arctree.fill;
+
+import com.redgrapefruit.arctree.ConfiguredTree;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.world.gen.feature.ConfiguredFeature;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Mass-plants registered {@link ConfiguredTree}s into existing regions of a world, like the {@code /arctree fill}
+ * command does.
+ * <br><br>
+ * Trees are computed on worker threads against snapshots of the world, which are taken and written back on the server
+ * thread within the {@link #setTickBudget(long)}, see {@link FillTask}. The chunks of the region are loaded with tickets
+ * as the fill goes, generating the ones that don't exist yet. Only trees built with the {@code TreeBuilder} or the
+ * {@code StructureTreeBuilder} can be filled.
+ */
+public final class FillService {
+    private static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    private static final List<FillTask> TASKS = new ArrayList<>();
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(WORKERS, runnable -> {
+        Thread thread = new Thread(runnable, "Arctree Fill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static long tickBudgetNanos = 10_000_000L;
+    private static int nextId = 1;
+    private static boolean initialized = false;
+
+    private FillService() {}
+
+    /**
+     * Fills a region with a tree. Must be called on the server thread.
+     *
+     * @param world The world to fill
+     * @param region The region to fill, trees are planted on its surface and may grow out of its top
+     * @param tree The {@link Identifier} of a registered {@link ConfiguredTree}
+     * @param density The chance of a tree in every cell of a grid as wide as the tree, from {@code 0} (exclusive)
+     *                to {@code 1} (inclusive)
+     * @param listener Gets notified about the progress, or {@code null}
+     * @return The started {@link FillTask}
+     */
+    public static @NotNull FillTask fill(
+            @NotNull ServerWorld world,
+            @NotNull BlockBox region,
+            @NotNull Identifier tree,
+            float density,
+            @Nullable FillTask.Listener listener) {
+
+        Objects.requireNonNull(world, "World must not be null");
+        Objects.requireNonNull(region, "Region must not be null");
+        Objects.requireNonNull(tree, "Tree ID must not be null");
+
+        // Bound checking
+        if (density <= 0.0f || density > 1.0f)
+            throw new RuntimeException("Fill density out of bounds: " + density + ". Must be between 0 (exclusive) and 1 (inclusive)");
+
+        // Chunks get generated for the fill, but not past the border
+        if (!world.getWorldBorder().contains(region.getMinX(), region.getMinZ()) || !world.getWorldBorder().contains(region.getMaxX(), region.getMaxZ()))
+            throw new RuntimeException("Fill region reaches past the world border");
+
+        ConfiguredTree configuredTree = ConfiguredTree.get(tree);
+        if (configuredTree == null)
+            throw new RuntimeException("No tree is registered under " + tree);
+
+        ConfiguredFeature<?, ?> feature = configuredTree.getConfiguredFeature();
+        if (!TreeSimulator.isSupported(feature))
+            throw new RuntimeException("Tree " + tree + " can't be filled, only trees made with the TreeBuilder or StructureTreeBuilder can");
+
+        if (!initialized) {
+            ServerTickEvents.END_SERVER_TICK.register(server -> tick());
+            ServerLifecycleEvents.SERVER_STOPPING.register(server -> cancelAll());
+
+            initialized = true;
+        }
+
+        FillTask task = new FillTask(nextId++, world, region, tree, feature, density, EXECUTOR, WORKERS + 1, listener);
+        TASKS.add(task);
+        return task;
+    }
+
+    /**
+     * Fills a region with a tree, see {@link #fill(ServerWorld, BlockBox, Identifier, float, FillTask.Listener)}.
+     */
+    public static @NotNull FillTask fill(@NotNull ServerWorld world, @NotNull BlockBox region, @NotNull Identifier tree, float density) {
+        return fill(world, region, tree, density, null);
+    }
+
+    /**
+     * Returns all running {@link FillTask}s.
+     */
+    public static @NotNull List<FillTask> getTasks() {
+        return Collections.unmodifiableList(TASKS);
+    }
+
+    /**
+     * Looks up a running {@link FillTask} by its ID.
+     *
+     * @return The {@link FillTask} or {@code null} if none is running under this ID
+     */
+    public static @Nullable FillTask getTask(int id) {
+        for (FillTask task : TASKS) {
+            if (task.getId() == id) return task;
+        }
+
+        return null;
+    }
+
+    /**
+     * Cancels all running {@link FillTask}s.
+     */
+    public static void cancelAll() {
+        new ArrayList<>(TASKS).forEach(FillTask::cancel);
+        TASKS.clear();
+    }
+
+    /**
+     * Sets the time in milliseconds that filling may take up every tick, {@code 10} by default.
+     */
+    public static void setTickBudget(long millis) {
+        if (millis <= 0)
+            throw new RuntimeException("Fill tick budget must be positive: " + millis);
+
+        FillService.tickBudgetNanos = millis * 1_000_000L;
+    }
+
+    private static void tick() {
+        if (TASKS.isEmpty()) return;
+
+        long deadline = System.nanoTime() + tickBudgetNanos;
+
+        Iterator<FillTask> iterator = TASKS.iterator();
+        while (iterator.hasNext()) {
+            FillTask task = iterator.next();
+            if (!task.isDone() && System.nanoTime() < deadline) task.tick(deadline);
+
+            if (task.isDone()) iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package com.redgrapefruit.arctree.fill;
+
+import com.redgrapefruit.arctree.ArctreeRandom;
+import com.redgrapefruit.arctree.placement.SpatialHash;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.gen.feature.ConfiguredFeature;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills a region of a world with a tree, started by {@link FillService#fill}.
+ * <br><br>
+ * The region is split into tiles of 4x4 chunks. For every tile, a ticket is added to the tile and a chunk around it,
+ * which loads those chunks off the server thread, generating them if needed. Once they are loaded, the server thread
+ * copies a {@link WorldSnapshot} of them, spread over as many ticks as the copying needs, and picks the tree positions.
+ * The trees are then grown into the snapshot on a worker thread, and the resulting blocks are written back by the
+ * server thread in batches of one chunk section. A block is only written if it hasn't changed since the snapshot was
+ * taken. The tickets are removed once the tile has been written.
+ * <br><br>
+ * The server thread never loads a chunk itself. Chunks that are unloaded anyway while their tile is in flight read as
+ * barriers in the snapshot, and their blocks are skipped when writing. Trees that fail to grow leave no blocks behind.
+ * <br><br>
+ * Positions are picked on a grid as wide as the tree, with a chance of {@code density} per cell. Every position
+ * claims the tree's collision radius in a {@link SpatialHash} shared by all tiles, and positions whose radius is already
+ * taken are skipped, so trees of neighbouring tiles don't grow into each other either.
+ */
+public final class FillTask {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int TILE_CHUNKS = 4;
+    private static final int TILE_SIZE = TILE_CHUNKS * 16;
+
+    /**
+     * How far above the region trees may grow
+     */
+    private static final int MAX_TREE_HEIGHT = 64;
+
+    private static final int PLACE_FLAGS = Block.NOTIFY_LISTENERS | Block.FORCE_STATE;
+
+    private static final ChunkTicketType<ChunkPos> TICKET = ChunkTicketType.create("arctree_fill", Comparator.comparingLong(ChunkPos::toLong));
+
+    private final int id;
+    private final @NotNull ServerWorld world;
+    private final @NotNull BlockBox region;
+    private final @NotNull Identifier tree;
+    private final @NotNull ConfiguredFeature<?, ?> feature;
+    private final float density;
+    private final int collisionRadius;
+    private final @NotNull ArctreeRandom random;
+    private final @NotNull Executor executor;
+    private final int maxComputingTiles;
+    private final @Nullable Listener listener;
+
+    private final SpatialHash claimed = new SpatialHash();
+    private final int minTileX;
+    private final int minTileZ;
+    private final int tilesX;
+    private final int tileCount;
+
+    /**
+     * Tiles whose chunks are being loaded or copied, in the order they were started
+     */
+    private final ArrayDeque<Tile> loading = new ArrayDeque<>();
+    private final ArrayDeque<Tile> computing = new ArrayDeque<>();
+    private final ArrayDeque<SectionBatch> batches = new ArrayDeque<>();
+    private final AtomicInteger grownTrees = new AtomicInteger();
+
+    private int nextTile = 0;
+    private int finishedTiles = 0;
+    private int writtenBlocks = 0;
+    private int skippedBlocks = 0;
+    private volatile boolean cancelled = false;
+
+    FillTask(
+            int id,
+            @NotNull ServerWorld world,
+            @NotNull BlockBox region,
+            @NotNull Identifier tree,
+            @NotNull ConfiguredFeature<?, ?> feature,
+            float density,
+            @NotNull Executor executor,
+            int maxComputingTiles,
+            @Nullable Listener listener) {
+
+        this.id = id;
+        this.world = world;
+        this.region = region;
+        this.tree = tree;
+        this.feature = feature;
+        this.density = density;
+        this.collisionRadius = TreeSimulator.getCollisionRadius(feature);
+        this.random = new ArctreeRandom(world.getRandom().nextLong());
+        this.executor = executor;
+        this.maxComputingTiles = maxComputingTiles;
+        this.listener = listener;
+
+        this.minTileX = Math.floorDiv(region.getMinX(), TILE_SIZE);
+        this.minTileZ = Math.floorDiv(region.getMinZ(), TILE_SIZE);
+        this.tilesX = Math.floorDiv(region.getMaxX(), TILE_SIZE) - minTileX + 1;
+        int tilesZ = Math.floorDiv(region.getMaxZ(), TILE_SIZE) - minTileZ + 1;
+        this.tileCount = tilesX * tilesZ;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public @NotNull ServerWorld getWorld() {
+        return world;
+    }
+
+    public @NotNull BlockBox getRegion() {
+        return region;
+    }
+
+    public @NotNull Identifier getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the share of finished tiles, from {@code 0} to {@code 1}.
+     */
+    public float getProgress() {
+        return tileCount == 0 ? 1.0f : (float) finishedTiles / tileCount;
+    }
+
+    /**
+     * Returns the amount of trees grown so far, some of which may not be written to the world yet.
+     */
+    public int getGrownTrees() {
+        return grownTrees.get();
+    }
+
+    public int getWrittenBlocks() {
+        return writtenBlocks;
+    }
+
+    /**
+     * Returns the amount of blocks that weren't written because they changed after their snapshot was taken, or
+     * because their chunk was unloaded.
+     */
+    public int getSkippedBlocks() {
+        return skippedBlocks;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return cancelled || (nextTile == tileCount && loading.isEmpty() && computing.isEmpty() && batches.isEmpty());
+    }
+
+    /**
+     * Stops the fill. Trees that were already written stay in the world. Must be called on the server thread.
+     */
+    public void cancel() {
+        if (isDone()) return;
+
+        cancelled = true;
+        computing.forEach(tile -> tile.future.cancel(false));
+
+        // Every tile in flight still holds its tickets
+        loading.forEach(Tile::removeTickets);
+        computing.forEach(Tile::removeTickets);
+        batches.stream().filter(batch -> batch.finishedTile != null).forEach(batch -> batch.finishedTile.removeTickets());
+
+        loading.clear();
+        computing.clear();
+        batches.clear();
+
+        if (listener != null) listener.finished(this);
+    }
+
+    /**
+     * Writes computed blocks, collects computed tiles, copies loaded ones and starts loading new ones until the deadline.
+     */
+    void tick(long deadline) {
+        while (!cancelled && System.nanoTime() < deadline) {
+            SectionBatch batch = batches.poll();
+
+            if (batch != null) {
+                write(batch);
+                continue;
+            }
+
+            Tile tile = computing.peek();
+
+            // Tiles are written in the order they were started
+            if (tile != null && tile.future.isDone()) {
+                computing.poll();
+                List<SectionBatch> computed = tile.future.join();
+
+                if (computed.isEmpty()) finishTile(tile);
+                else computed.get(computed.size() - 1).finishedTile = tile;
+
+                batches.addAll(computed);
+                continue;
+            }
+
+            // Copying counts against the deadline, so a tile may take several ticks to start
+            Tile loaded = loading.peek();
+
+            if (loaded != null && loaded.isLoaded()) {
+                if (loaded.copyChunks(deadline)) {
+                    loading.poll();
+                    start(loaded);
+                }
+
+                continue;
+            }
+
+            if (nextTile < tileCount && loading.size() + computing.size() < maxComputingTiles) {
+                loading.add(new Tile(nextTile++));
+                continue;
+            }
+
+            // Waiting for the chunks or the workers
+            break;
+        }
+
+        if (isDone() && !cancelled && listener != null) listener.finished(this);
+    }
+
+    /**
+     * Picks the positions of a copied tile and hands it to a worker
+     */
+    private void start(@NotNull Tile tile) {
+        ArctreeRandom tileRandom = random.split(tile.index);
+        List<BlockPos> positions = pickPositions(tile.snapshot, tileRandom, tile.minX, tile.minZ, tile.maxX, tile.maxZ);
+        ArctreeRandom treeRandom = tileRandom.split();
+
+        tile.future = CompletableFuture
+                .supplyAsync(() -> compute(tile.snapshot, positions, treeRandom), executor)
+                .exceptionally(error -> {
+                    // Joined on the server thread, so nothing may escape. The tile is finished without any trees
+                    LOGGER.error("Failed to compute a tile of fill #{} with {}", id, tree, error);
+                    return List.of();
+                });
+        computing.add(tile);
+    }
+
+    private @NotNull List<BlockPos> pickPositions(@NotNull WorldSnapshot snapshot, @NotNull ArctreeRandom random, int minX, int minZ, int maxX, int maxZ) {
+        int cellSize = collisionRadius * 2 + 1;
+        List<BlockPos> positions = new ArrayList<>();
+
+        // The grid starts at the region's corner, so cells don't depend on the tiles
+        for (int cellX = alignToGrid(minX, region.getMinX(), cellSize); cellX <= maxX; cellX += cellSize) {
+            for (int cellZ = alignToGrid(minZ, region.getMinZ(), cellSize); cellZ <= maxZ; cellZ += cellSize) {
+                if (random.nextFloat() >= density) continue;
+
+                int x = cellX + random.nextInt(cellSize);
+                int z = cellZ + random.nextInt(cellSize);
+                if (x > region.getMaxX() || z > region.getMaxZ()) continue;
+
+                // Reading the height of a chunk that was unloaded in the meantime would load it
+                if (!snapshot.isCopied(ChunkSectionPos.getSectionCoord(x), ChunkSectionPos.getSectionCoord(z))) continue;
+
+                int y = world.getTopY(Heightmap.Type.MOTION_BLOCKING_NO_LEAVES, x, z);
+                if (y - 1 < region.getMinY() || y - 1 > region.getMaxY()) continue;
+
+                if (claimed.tryClaim(x, z, collisionRadius)) positions.add(new BlockPos(x, y, z));
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Grows the trees of a tile on a worker thread and batches the result by chunk section
+     */
+    private @NotNull List<SectionBatch> compute(@NotNull WorldSnapshot snapshot, @NotNull List<BlockPos> positions, @NotNull ArctreeRandom random) {
+        for (int i = 0; i < positions.size() && !cancelled; i++) {
+            // Only whole trees end up in the snapshot
+            snapshot.beginTree();
+            boolean grown = false;
+
+            try {
+                grown = TreeSimulator.grow(snapshot, world, feature, random.split(i), positions.get(i));
+            } catch (RuntimeException e) {
+                // Some decorators expect a real world, the tree is left out
+                LOGGER.debug("Failed to grow {} at {}", tree, positions.get(i), e);
+            }
+
+            if (grown) {
+                snapshot.commitTree();
+                grownTrees.incrementAndGet();
+            } else {
+                snapshot.discardTree();
+            }
+        }
+
+        // Sorted by section, so neighbouring sections are written one after another
+        Long2ObjectSortedMap<SectionBatch> sections = new Long2ObjectRBTreeMap<>();
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        for (Long2ObjectMap.Entry<BlockState> write : snapshot.getWrites().long2ObjectEntrySet()) {
+            pos.set(write.getLongKey());
+
+            long section = ChunkSectionPos.asLong(
+                    ChunkSectionPos.getSectionCoord(pos.getX()),
+                    ChunkSectionPos.getSectionCoord(pos.getY()),
+                    ChunkSectionPos.getSectionCoord(pos.getZ()));
+
+            sections.computeIfAbsent(section, key -> new SectionBatch())
+                    .add(write.getLongKey(), snapshot.getOriginalState(pos), write.getValue());
+        }
+
+        return new ArrayList<>(sections.values());
+    }
+
+    private void write(@NotNull SectionBatch batch) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        pos.set(batch.positions.getLong(0));
+
+        // Touching a chunk that was unloaded since its snapshot would load it again on the server thread
+        if (world.getChunk(ChunkSectionPos.getSectionCoord(pos.getX()), ChunkSectionPos.getSectionCoord(pos.getZ()), ChunkStatus.FULL, false) == null) {
+            skippedBlocks += batch.positions.size();
+            if (batch.finishedTile != null) finishTile(batch.finishedTile);
+            return;
+        }
+
+        for (int i = 0; i < batch.positions.size(); i++) {
+            pos.set(batch.positions.getLong(i));
+
+            // Someone built here after the snapshot was taken
+            if (world.getBlockState(pos) != batch.originalStates.get(i)) {
+                skippedBlocks++;
+                continue;
+            }
+
+            world.setBlockState(pos, batch.states.get(i), PLACE_FLAGS);
+            writtenBlocks++;
+        }
+
+        if (batch.finishedTile != null) finishTile(batch.finishedTile);
+    }
+
+    private void finishTile(@NotNull Tile tile) {
+        tile.removeTickets();
+        finishedTiles++;
+        if (listener != null) listener.progress(this);
+    }
+
+    /**
+     * Returns the first grid line at or after {@code value}
+     */
+    private static int alignToGrid(int value, int origin, int cellSize) {
+        return origin + Math.floorDiv(value - origin + cellSize - 1, cellSize) * cellSize;
+    }
+
+    /**
+     * A tile on its way from loading its chunks to being written
+     */
+    private final class Tile {
+        private final int index;
+        private final int minX;
+        private final int minZ;
+        private final int maxX;
+        private final int maxZ;
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int chunksX;
+        private final int chunkCount;
+        private final @NotNull WorldSnapshot snapshot;
+
+        /**
+         * The chunks before this one are known to be loaded
+         */
+        private int nextLoadedChunk = 0;
+        private int nextCopiedChunk = 0;
+        private boolean ticketed = true;
+
+        /**
+         * The computed blocks, {@code null} until the tile is handed to a worker
+         */
+        private @Nullable CompletableFuture<List<SectionBatch>> future;
+
+        private Tile(int index) {
+            this.index = index;
+
+            int tileX = minTileX + index % tilesX;
+            int tileZ = minTileZ + index / tilesX;
+
+            this.minX = Math.max(region.getMinX(), tileX * TILE_SIZE);
+            this.minZ = Math.max(region.getMinZ(), tileZ * TILE_SIZE);
+            this.maxX = Math.min(region.getMaxX(), tileX * TILE_SIZE + TILE_SIZE - 1);
+            this.maxZ = Math.min(region.getMaxZ(), tileZ * TILE_SIZE + TILE_SIZE - 1);
+
+            // One chunk around the tile, so trees at its edges can grow out of it
+            this.minChunkX = ChunkSectionPos.getSectionCoord(minX) - 1;
+            this.minChunkZ = ChunkSectionPos.getSectionCoord(minZ) - 1;
+            int maxChunkX = ChunkSectionPos.getSectionCoord(maxX) + 1;
+            int maxChunkZ = ChunkSectionPos.getSectionCoord(maxZ) + 1;
+
+            this.chunksX = maxChunkX - minChunkX + 1;
+            this.chunkCount = chunksX * (maxChunkZ - minChunkZ + 1);
+            this.snapshot = WorldSnapshot.create(world, minChunkX, minChunkZ, maxChunkX, maxChunkZ, region.getMinY() - 1, region.getMaxY() + MAX_TREE_HEIGHT);
+
+            // Loads the chunks off the server thread and keeps them loaded until the tile is written
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                ChunkPos pos = getChunkPos(chunk);
+                world.getChunkManager().addTicket(TICKET, pos, 0, pos);
+            }
+        }
+
+        private @NotNull ChunkPos getChunkPos(int chunk) {
+            return new ChunkPos(minChunkX + chunk % chunksX, minChunkZ + chunk / chunksX);
+        }
+
+        /**
+         * Whether all chunks of the tile are loaded, without waiting for them
+         */
+        private boolean isLoaded() {
+            while (nextLoadedChunk < chunkCount) {
+                ChunkPos pos = getChunkPos(nextLoadedChunk);
+
+                // Only returns chunks that are done loading, unlike the level check of isChunkLoaded
+                if (world.getChunkManager().getWorldChunk(pos.x, pos.z) == null) return false;
+
+                nextLoadedChunk++;
+            }
+
+            return true;
+        }
+
+        /**
+         * Copies chunks until all are copied or the deadline has passed, at least one per call.
+         *
+         * @return {@code true} once all chunks are copied
+         */
+        private boolean copyChunks(long deadline) {
+            do {
+                ChunkPos pos = getChunkPos(nextCopiedChunk++);
+                snapshot.copyChunk(world, pos.x, pos.z);
+            } while (nextCopiedChunk < chunkCount && System.nanoTime() < deadline);
+
+            return nextCopiedChunk == chunkCount;
+        }
+
+        private void removeTickets() {
+            if (!ticketed) return;
+
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                ChunkPos pos = getChunkPos(chunk);
+                world.getChunkManager().removeTicket(TICKET, pos, 0, pos);
+            }
+
+            ticketed = false;
+        }
+    }
+
+    /**
+     * The computed blocks of a single chunk section
+     */
+    private static final class SectionBatch {
+        private final LongArrayList positions = new LongArrayList();
+        private final List<BlockState> originalStates = new ArrayList<>();
+        private final List<BlockState> states = new ArrayList<>();
+
+        /**
+         * The tile whose last batch this is, {@code null} for all other batches
+         */
+        private @Nullable Tile finishedTile;
+
+        private void add(long pos, @NotNull BlockState originalState, @NotNull BlockState state) {
+            positions.add(pos);
+            originalStates.add(originalState);
+            states.add(state);
+        }
+    }
+
+    /**
+     * Gets notified about the progress of a {@link FillTask}, on the server thread
+     */
+    public interface Listener {
+        /**
+         * Called whenever a tile has been written.
+         */
+        default void progress(@NotNull FillTask task) {}
+
+        /**
+         * Called once the task is done or has been cancelled.
+         */
+        default void finished(@NotNull FillTask task) {}
+    }
+}
@@ -0,0 +1,202 @@
+package com.redgrapefruit.arctree.fill;
+
+import com.redgrapefruit.arctree.ArctreeRandom;
+import com.redgrapefruit.arctree.feature.StructureTreeFeature;
+import com.redgrapefruit.arctree.feature.StructureTreeFeatureConfig;
+import com.redgrapefruit.arctree.placement.TreeRadius;
+import com.redgrapefruit.arctree.shape.TreeShapeLibrary;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.state.property.Properties;
+import net.minecraft.tag.BlockTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.HeightLimitView;
+import net.minecraft.world.gen.feature.ConfiguredFeature;
+import net.minecraft.world.gen.feature.Feature;
+import net.minecraft.world.gen.feature.FeatureConfig;
+import net.minecraft.world.gen.feature.TreeFeature;
+import net.minecraft.world.gen.feature.TreeFeatureConfig;
+import net.minecraft.world.gen.foliage.FoliagePlacer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Grows trees into a {@link WorldSnapshot}, off the server thread.
+ * <br><br>
+ * Trees with a {@link TreeFeatureConfig} go through the same steps as {@link Feature#TREE}: the height check,
+ * the trunk and foliage placers, the decorators and finally the distances of the new leaves. Trees with a
+ * {@link StructureTreeFeatureConfig} are placed by the {@link StructureTreeFeature}.
+ */
+final class TreeSimulator {
+    /**
+     * The highest distance at which leaves stay connected to a log
+     */
+    private static final int MAX_LEAVES_DISTANCE = 6;
+
+    private TreeSimulator() {}
+
+    /**
+     * Whether trees of this {@link ConfiguredFeature} can be grown into a snapshot.
+     */
+    static boolean isSupported(@NotNull ConfiguredFeature<?, ?> feature) {
+        return feature.config instanceof TreeFeatureConfig || feature.config instanceof StructureTreeFeatureConfig;
+    }
+
+    /**
+     * Returns the horizontal radius a tree of this {@link ConfiguredFeature} needs for itself.
+     */
+    static int getCollisionRadius(@NotNull ConfiguredFeature<?, ?> feature) {
+        if (feature.config instanceof TreeFeatureConfig config) {
+            return TreeRadius.estimate(config.trunkPlacer, config.foliagePlacer);
+        }
+
+        if (feature.config instanceof StructureTreeFeatureConfig config) {
+            TreeShapeLibrary library = TreeShapeLibrary.get(config.library);
+            return library != null ? library.getMaxRadius() : 0;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Grows a tree into the snapshot.
+     *
+     * @return {@code true} if the tree was grown
+     */
+    static boolean grow(
+            @NotNull WorldSnapshot world,
+            @NotNull HeightLimitView heightLimit,
+            @NotNull ConfiguredFeature<?, ?> feature,
+            @NotNull ArctreeRandom random,
+            @NotNull BlockPos origin) {
+
+        FeatureConfig config = feature.config;
+
+        if (config instanceof TreeFeatureConfig treeConfig) {
+            return growTree(world, heightLimit, treeConfig, random, origin);
+        }
+
+        if (config instanceof StructureTreeFeatureConfig structureConfig) {
+            if (!structureConfig.forceDirt && !world.testBlockState(origin.down(), Feature::isSoil)) return false;
+
+            return StructureTreeFeature.place(world, heightLimit, world::setBlockState, random, origin, structureConfig);
+        }
+
+        return false;
+    }
+
+    private static boolean growTree(
+            @NotNull WorldSnapshot world,
+            @NotNull HeightLimitView heightLimit,
+            @NotNull TreeFeatureConfig config,
+            @NotNull ArctreeRandom random,
+            @NotNull BlockPos origin) {
+
+        int height = config.trunkPlacer.getHeight(random);
+        int foliageHeight = config.foliagePlacer.getRandomHeight(random, height, config);
+        int trunkLength = height - foliageHeight;
+        int foliageRadius = config.foliagePlacer.getRandomRadius(random, trunkLength);
+
+        if (origin.getY() < heightLimit.getBottomY() + 1 || origin.getY() + height + 1 > heightLimit.getTopY()) return false;
+        if (!config.forceDirt && !world.testBlockState(origin.down(), Feature::isSoil)) return false;
+
+        OptionalInt minClippedHeight = config.minimumSize.getMinClippedHeight();
+        int topPosition = getTopPosition(world, height, origin, config);
+        if (topPosition < height && (minClippedHeight.isEmpty() || topPosition < minClippedHeight.getAsInt())) return false;
+
+        Set<BlockPos> logs = new LinkedHashSet<>();
+        Set<BlockPos> leaves = new LinkedHashSet<>();
+
+        BiConsumer<BlockPos, BlockState> trunkReplacer = (pos, state) -> {
+            logs.add(pos.toImmutable());
+            world.setBlockState(pos, state);
+        };
+        BiConsumer<BlockPos, BlockState> foliageReplacer = (pos, state) -> {
+            leaves.add(pos.toImmutable());
+            world.setBlockState(pos, state);
+        };
+
+        List<FoliagePlacer.TreeNode> nodes = config.trunkPlacer.generate(world, trunkReplacer, random, topPosition, origin, config);
+        nodes.forEach(node -> config.foliagePlacer.generate(world, foliageReplacer, random, config, topPosition, node, foliageHeight, foliageRadius));
+
+        if (!config.decorators.isEmpty()) {
+            List<BlockPos> sortedLogs = logs.stream().sorted(Comparator.comparingInt(Vec3i::getY)).toList();
+            List<BlockPos> sortedLeaves = leaves.stream().sorted(Comparator.comparingInt(Vec3i::getY)).toList();
+            BiConsumer<BlockPos, BlockState> decorationReplacer = (pos, state) -> world.setBlockState(pos.toImmutable(), state);
+
+            config.decorators.forEach(decorator -> decorator.generate(world, decorationReplacer, random, sortedLogs, sortedLeaves));
+        }
+
+        connectLeaves(world, logs, leaves);
+        return true;
+    }
+
+    /**
+     * Same as the height check of {@link TreeFeature}: the height the tree can grow to before it runs into something
+     */
+    private static int getTopPosition(@NotNull WorldSnapshot world, int height, @NotNull BlockPos origin, @NotNull TreeFeatureConfig config) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        for (int y = 0; y <= height + 1; y++) {
+            int radius = config.minimumSize.getRadius(height, y);
+
+            for (int x = -radius; x <= radius; x++) {
+                for (int z = -radius; z <= radius; z++) {
+                    pos.set(origin, x, y, z);
+
+                    boolean free = TreeFeature.canReplace(world, pos) || world.testBlockState(pos, state -> state.isIn(BlockTags.LOGS));
+                    boolean vine = world.testBlockState(pos, state -> state.isOf(Blocks.VINE));
+
+                    if (!free || (!config.ignoreVines && vine)) return y - 2;
+                }
+            }
+        }
+
+        return height;
+    }
+
+    /**
+     * Sets the distance of the tree's leaves from its logs, like {@link TreeFeature} does once a tree is placed.
+     * Leaves further away than {@value #MAX_LEAVES_DISTANCE} keep their distance and decay.
+     */
+    private static void connectLeaves(@NotNull WorldSnapshot world, @NotNull Set<BlockPos> logs, @NotNull Set<BlockPos> leaves) {
+        Object2IntMap<BlockPos> distances = new Object2IntOpenHashMap<>();
+        ArrayDeque<BlockPos> queue = new ArrayDeque<>();
+
+        for (BlockPos log : logs) {
+            if (world.testBlockState(log, state -> state.isIn(BlockTags.LOGS))) {
+                distances.put(log, 0);
+                queue.add(log);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            BlockPos current = queue.poll();
+            int distance = distances.getInt(current);
+            if (distance >= MAX_LEAVES_DISTANCE) continue;
+
+            for (Direction direction : Direction.values()) {
+                BlockPos neighbour = current.offset(direction);
+                if (!leaves.contains(neighbour) || distances.containsKey(neighbour)) continue;
+
+                BlockState state = world.getBlockState(neighbour);
+                if (!state.contains(Properties.DISTANCE_1_7)) continue;
+
+                distances.put(neighbour, distance + 1);
+                world.setBlockState(neighbour, state.with(Properties.DISTANCE_1_7, distance + 1));
+                queue.add(neighbour);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.redgrapefruit.arctree.fill;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.TestableWorld;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Predicate;
+
+/**
+ * A copy of the blocks of a box of chunk sections, taken on the server thread, that trees can be computed against
+ * on a worker thread.
+ * <br><br>
+ * The snapshot is created empty and then copied chunk by chunk, so the copying can be spread over several ticks.
+ * Chunks that aren't loaded are never loaded or generated for the snapshot.
+ * <br><br>
+ * Blocks written by a tree go into a layer of their own, which is merged into the overlay on top of the copy once the
+ * tree has been grown completely, so that later trees in the same snapshot see them. Anything outside the copied box
+ * or in a chunk that wasn't loaded reads as a barrier, which no tree can grow into.
+ */
+final class WorldSnapshot implements TestableWorld {
+    private static final BlockState OUTSIDE = Blocks.BARRIER.getDefaultState();
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int sizeX;
+    private final int sizeZ;
+    private final int minSectionY;
+    private final int sizeY;
+
+    /**
+     * The copied block containers by chunk and section, {@code null} for sections without any blocks
+     */
+    private final @Nullable PalettedContainer<BlockState>[] sections;
+
+    /**
+     * Which chunks have been copied, by chunk
+     */
+    private final boolean[] copiedChunks;
+
+    private final Long2ObjectMap<BlockState> overlay = new Long2ObjectLinkedOpenHashMap<>();
+
+    /**
+     * The blocks written by the tree being grown, {@code null} outside of {@link #beginTree()}
+     */
+    private @Nullable Long2ObjectMap<BlockState> layer;
+
+    @SuppressWarnings("unchecked")
+    private WorldSnapshot(int minChunkX, int minChunkZ, int sizeX, int sizeZ, int minSectionY, int sizeY) {
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.sizeX = sizeX;
+        this.sizeZ = sizeZ;
+        this.minSectionY = minSectionY;
+        this.sizeY = sizeY;
+        this.sections = new PalettedContainer[sizeX * sizeZ * sizeY];
+        this.copiedChunks = new boolean[sizeX * sizeZ];
+    }
+
+    /**
+     * Creates an empty snapshot of a box of chunks, to be filled with {@link #copyChunk}.
+     */
+    static @NotNull WorldSnapshot create(@NotNull ServerWorld world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, int minY, int maxY) {
+        int minSectionY = Math.max(ChunkSectionPos.getSectionCoord(minY), world.getBottomSectionCoord());
+        int maxSectionY = Math.min(ChunkSectionPos.getSectionCoord(maxY), world.getTopSectionCoord() - 1);
+
+        return new WorldSnapshot(
+                minChunkX,
+                minChunkZ,
+                maxChunkX - minChunkX + 1,
+                maxChunkZ - minChunkZ + 1,
+                minSectionY,
+                Math.max(0, maxSectionY - minSectionY + 1));
+    }
+
+    /**
+     * Copies the sections of a chunk of the box if it is loaded. Must be called on the server thread.
+     *
+     * @return {@code true} if the chunk was copied, {@code false} if it isn't loaded
+     */
+    boolean copyChunk(@NotNull ServerWorld world, int chunkX, int chunkZ) {
+        // Neither loads nor generates the chunk
+        if (!world.getChunkManager().isChunkLoaded(chunkX, chunkZ)) return false;
+
+        Chunk chunk = world.getChunk(chunkX, chunkZ, ChunkStatus.FULL, false);
+        if (chunk == null) return false;
+
+        ChunkSection[] chunkSections = chunk.getSectionArray();
+
+        for (int sectionY = minSectionY; sectionY < minSectionY + sizeY; sectionY++) {
+            ChunkSection section = chunkSections[world.sectionCoordToIndex(sectionY)];
+            if (section == null || section.isEmpty()) continue;
+
+            sections[index(chunkX, chunkZ, sectionY)] = section.getBlockStateContainer().copy();
+        }
+
+        copiedChunks[(chunkX - minChunkX) * sizeZ + (chunkZ - minChunkZ)] = true;
+        return true;
+    }
+
+    /**
+     * Whether a chunk has been copied into the snapshot.
+     */
+    boolean isCopied(int chunkX, int chunkZ) {
+        int x = chunkX - minChunkX;
+        int z = chunkZ - minChunkZ;
+
+        return x >= 0 && x < sizeX && z >= 0 && z < sizeZ && copiedChunks[x * sizeZ + z];
+    }
+
+    /**
+     * Starts growing a tree, whose blocks are kept apart until {@link #commitTree()}.
+     */
+    void beginTree() {
+        layer = new Long2ObjectLinkedOpenHashMap<>();
+    }
+
+    /**
+     * Merges the blocks of the grown tree into the overlay.
+     */
+    void commitTree() {
+        if (layer != null) overlay.putAll(layer);
+        layer = null;
+    }
+
+    /**
+     * Throws away the blocks of a tree that failed to grow.
+     */
+    void discardTree() {
+        layer = null;
+    }
+
+    /**
+     * Returns the block at a position, including blocks written to the overlay.
+     */
+    @NotNull BlockState getBlockState(@NotNull BlockPos pos) {
+        long packed = pos.asLong();
+
+        BlockState written = layer != null ? layer.get(packed) : null;
+        if (written == null) written = overlay.get(packed);
+
+        return written != null ? written : getOriginalState(pos);
+    }
+
+    /**
+     * Returns the block at a position as it was when the snapshot was taken.
+     */
+    @NotNull BlockState getOriginalState(@NotNull BlockPos pos) {
+        int chunkX = ChunkSectionPos.getSectionCoord(pos.getX()) - minChunkX;
+        int chunkZ = ChunkSectionPos.getSectionCoord(pos.getZ()) - minChunkZ;
+        int sectionY = ChunkSectionPos.getSectionCoord(pos.getY()) - minSectionY;
+
+        if (chunkX < 0 || chunkX >= sizeX || chunkZ < 0 || chunkZ >= sizeZ || sectionY < 0 || sectionY >= sizeY) {
+            return OUTSIDE;
+        }
+
+        if (!copiedChunks[chunkX * sizeZ + chunkZ]) return OUTSIDE;
+
+        PalettedContainer<BlockState> section = sections[(chunkX * sizeZ + chunkZ) * sizeY + sectionY];
+        if (section == null) return AIR;
+
+        return section.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+    }
+
+    void setBlockState(@NotNull BlockPos pos, @NotNull BlockState state) {
+        (layer != null ? layer : overlay).put(pos.asLong(), state);
+    }
+
+    /**
+     * Returns all blocks of committed trees, by their packed position in the order they were first written.
+     */
+    @NotNull Long2ObjectMap<BlockState> getWrites() {
+        return overlay;
+    }
+
+    @Override
+    public boolean testBlockState(BlockPos pos, Predicate<BlockState> state) {
+        return state.test(getBlockState(pos));
+    }
+
+    /**
+     * Scans the copied column down from its top, only used by some tree decorators
+     */
+    public BlockPos getTopPosition(Heightmap.Type type, BlockPos pos) {
+        int minY = minSectionY * 16;
+        BlockPos.Mutable mutable = new BlockPos.Mutable(pos.getX(), minY + sizeY * 16 - 1, pos.getZ());
+
+        for (; mutable.getY() >= minY; mutable.move(0, -1, 0)) {
+            if (type.getBlockPredicate().test(getBlockState(mutable))) return mutable.up();
+        }
+
+        return new BlockPos(pos.getX(), minY, pos.getZ());
+    }
+
+    private int index(int chunkX, int chunkZ, int sectionY) {
+        return ((chunkX - minChunkX) * sizeZ + (chunkZ - minChunkZ)) * sizeY + (sectionY - minSectionY);
+    }
+}
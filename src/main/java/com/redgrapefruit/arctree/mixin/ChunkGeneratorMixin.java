@@ -0,0 +1,28 @@
+package com.redgrapefruit.arctree.mixin;
+
+import com.redgrapefruit.arctree.placement.SurfaceCache;
+import com.redgrapefruit.arctree.placement.TreePlanner;
+import net.minecraft.world.StructureWorldAccess;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.StructureAccessor;
+import net.minecraft.world.gen.chunk.ChunkGenerator;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+// Scopes the per-chunk Arctree caches to the decoration of a single chunk
+@Mixin(ChunkGenerator.class)
+public abstract class ChunkGeneratorMixin {
+    @Inject(method = "generateFeatures", at = @At("HEAD"))
+    private void arctree$beginDecoration(StructureWorldAccess world, Chunk chunk, StructureAccessor structureAccessor, CallbackInfo ci) {
+        SurfaceCache.begin(world, chunk);
+        TreePlanner.begin(world, chunk, (ChunkGenerator) (Object) this);
+    }
+
+    @Inject(method = "generateFeatures", at = @At("RETURN"))
+    private void arctree$endDecoration(StructureWorldAccess world, Chunk chunk, StructureAccessor structureAccessor, CallbackInfo ci) {
+        TreePlanner.end();
+        SurfaceCache.end();
+    }
+}
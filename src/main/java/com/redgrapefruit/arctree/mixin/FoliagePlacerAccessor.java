@@ -0,0 +1,17 @@
+package com.redgrapefruit.arctree.mixin;
+
+import net.minecraft.util.math.intprovider.IntProvider;
+import net.minecraft.world.gen.foliage.FoliagePlacer;
+import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(FoliagePlacer.class)
+public interface FoliagePlacerAccessor {
+    /**
+     * Gets the radius of the {@link FoliagePlacer}, used to estimate the default collision radius of planned trees
+     */
+    @Accessor("radius")
+    @NotNull
+    IntProvider getRadius();
+}
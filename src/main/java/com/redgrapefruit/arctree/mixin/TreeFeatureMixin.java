@@ -0,0 +1,46 @@
+package com.redgrapefruit.arctree.mixin;
+
+import com.redgrapefruit.arctree.feature.PaletteObstructionCheck;
+import com.redgrapefruit.arctree.placement.SurfaceCache;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.shape.VoxelSet;
+import net.minecraft.world.TestableWorld;
+import net.minecraft.world.WorldAccess;
+import net.minecraft.world.gen.feature.TreeFeature;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.Set;
+
+// Lets Arctree trees skip per-block obstruction checks in sections that are known to be free, and keeps the
+// surface cache from answering for columns that a tree has just been placed on
+@Mixin(TreeFeature.class)
+public abstract class TreeFeatureMixin {
+    @Inject(method = "canReplace(Lnet/minecraft/world/TestableWorld;Lnet/minecraft/util/math/BlockPos;)Z", at = @At("HEAD"), cancellable = true)
+    private static void arctree$canReplace(TestableWorld world, BlockPos pos, CallbackInfoReturnable<Boolean> cir) {
+        if (PaletteObstructionCheck.isReplaceable(world, pos)) cir.setReturnValue(true);
+    }
+
+    @Inject(method = "isVine(Lnet/minecraft/world/TestableWorld;Lnet/minecraft/util/math/BlockPos;)Z", at = @At("HEAD"), cancellable = true)
+    private static void arctree$isVine(TestableWorld world, BlockPos pos, CallbackInfoReturnable<Boolean> cir) {
+        if (PaletteObstructionCheck.isFreeOfVines(world, pos)) cir.setReturnValue(false);
+    }
+
+    @Inject(method = "getTopPosition", at = @At("HEAD"))
+    private void arctree$beginScan(CallbackInfoReturnable<Integer> cir) {
+        PaletteObstructionCheck.beginScan();
+    }
+
+    @Inject(method = "getTopPosition", at = @At("RETURN"))
+    private void arctree$endScan(CallbackInfoReturnable<Integer> cir) {
+        PaletteObstructionCheck.endScan();
+    }
+
+    @Inject(method = "placeLogsAndLeaves", at = @At("HEAD"))
+    private static void arctree$markSurfaceDirty(WorldAccess world, BlockBox box, Set<BlockPos> trunkPositions, Set<BlockPos> decorationPositions, CallbackInfoReturnable<VoxelSet> cir) {
+        SurfaceCache.markDirty(world, box);
+    }
+}
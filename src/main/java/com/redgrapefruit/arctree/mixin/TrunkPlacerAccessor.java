@@ -0,0 +1,20 @@
+package com.redgrapefruit.arctree.mixin;
+
+import net.minecraft.world.gen.trunk.TrunkPlacer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(TrunkPlacer.class)
+public interface TrunkPlacerAccessor {
+    /**
+     * Gets the base height of the {@link TrunkPlacer}, used to estimate the reach of its branches
+     */
+    @Accessor("baseHeight")
+    int getBaseHeight();
+
+    @Accessor("firstRandomHeight")
+    int getFirstRandomHeight();
+
+    @Accessor("secondRandomHeight")
+    int getSecondRandomHeight();
+}
@@ -0,0 +1,37 @@
+package com.redgrapefruit.arctree.placement;
+
+import com.redgrapefruit.arctree.TreeTypes;
+import com.redgrapefruit.arctree.retrogen.RetrogenPlacementModifier;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.gen.decorator.PlacementModifierType;
+
+/**
+ * The {@link PlacementModifierType}s that Arctree registers. They are registered during mod initialization by
+ * {@link #init()}, so that trees using them can be encoded as soon as the registries are copied.
+ */
+public final class ArctreePlacementModifiers {
+    /**
+     * The type of the {@link SurfacePlacementModifier}
+     */
+    public static final PlacementModifierType<SurfacePlacementModifier> SURFACE =
+            TreeTypes.placementModifierType(new Identifier("arctree", "surface"), SurfacePlacementModifier.CODEC);
+
+    /**
+     * The type of the {@link PlannedPlacementModifier}
+     */
+    public static final PlacementModifierType<PlannedPlacementModifier> PLANNED =
+            TreeTypes.placementModifierType(new Identifier("arctree", "planned"), PlannedPlacementModifier.CODEC);
+
+    /**
+     * The type of the {@link RetrogenPlacementModifier}
+     */
+    public static final PlacementModifierType<RetrogenPlacementModifier> RETROGEN =
+            TreeTypes.placementModifierType(new Identifier("arctree", "retrogen"), RetrogenPlacementModifier.CODEC);
+
+    private ArctreePlacementModifiers() {}
+
+    /**
+     * Registers the {@link PlacementModifierType}s by loading this class. Called by the {@code ArctreeMod}.
+     */
+    public static void init() {}
+}
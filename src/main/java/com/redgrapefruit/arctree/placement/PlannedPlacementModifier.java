@@ -0,0 +1,128 @@
+package com.redgrapefruit.arctree.placement;
+
+import com.mojang.serialization.Codec;
+import com.redgrapefruit.arctree.ConfiguredTree;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.gen.decorator.DecoratorContext;
+import net.minecraft.world.gen.decorator.PlacementModifier;
+import net.minecraft.world.gen.decorator.PlacementModifierType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.IntSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Hands the placement of its tree over to the {@link TreePlanner}. It wraps the tree's own {@link PlacementModifier}s,
+ * which the planner runs to find the tree's candidate positions in a chunk, and returns the candidates that
+ * survived the planning.
+ * <br><br>
+ * Created by {@code TreeBuilder#planCollisions()} and bound to the tree's {@link Identifier} once the
+ * {@link ConfiguredTree} is registered. Until then, it simply returns all candidates.
+ */
+public final class PlannedPlacementModifier extends PlacementModifier {
+    public static final Codec<PlannedPlacementModifier> CODEC = Identifier.CODEC
+            .fieldOf("tree")
+            .xmap(PlannedPlacementModifier::new, modifier -> Objects.requireNonNull(modifier.tree, "Unbound collision planning modifier"))
+            .codec();
+
+    private final @NotNull List<PlacementModifier> candidateModifiers;
+
+    /**
+     * The index of the first {@link SurfacePlacementModifier} in the {@link #candidateModifiers}, or {@code -1}
+     */
+    private final int surfaceIndex;
+    private final @NotNull IntSupplier collisionRadius;
+    private volatile @Nullable Identifier tree;
+
+    /**
+     * Creates a modifier that isn't bound to a tree yet
+     *
+     * @param candidateModifiers The {@link PlacementModifier}s that find the tree's candidate positions
+     * @param collisionRadius The horizontal radius the tree needs for itself, queried whenever a chunk is planned
+     */
+    public PlannedPlacementModifier(@NotNull List<PlacementModifier> candidateModifiers, @NotNull IntSupplier collisionRadius) {
+        Objects.requireNonNull(candidateModifiers, "Candidate modifiers must not be null");
+        Objects.requireNonNull(collisionRadius, "Collision radius must not be null");
+
+        this.candidateModifiers = List.copyOf(candidateModifiers);
+        this.surfaceIndex = this.candidateModifiers.indexOf(SurfacePlacementModifier.of());
+        this.collisionRadius = collisionRadius;
+    }
+
+    /**
+     * Decoded from a config, delegates to the registered tree's modifier
+     */
+    private PlannedPlacementModifier(@NotNull Identifier tree) {
+        this.candidateModifiers = List.of();
+        this.surfaceIndex = -1;
+        this.collisionRadius = () -> 0;
+        this.tree = tree;
+    }
+
+    /**
+     * Binds this modifier to a tree and adds the tree to the {@link TreePlanner}, done by
+     * {@link ConfiguredTree#register(Identifier)}
+     *
+     * @param id The tree's {@link Identifier}
+     * @param tree The registered tree
+     */
+    public void bind(@NotNull Identifier id, @NotNull ConfiguredTree tree) {
+        Objects.requireNonNull(id, "Tree ID must not be null");
+
+        if (this.tree != null && !this.tree.equals(id))
+            throw new RuntimeException("Collision planning modifier is already bound to " + this.tree);
+
+        this.tree = id;
+        TreePlanner.register(id, tree, this);
+    }
+
+    /**
+     * Returns the horizontal radius the tree needs for itself.
+     */
+    public int getCollisionRadius() {
+        return collisionRadius.getAsInt();
+    }
+
+    /**
+     * Runs the wrapped {@link PlacementModifier}s, just like a {@code PlacedFeature} would.
+     */
+    @NotNull Stream<BlockPos> getCandidates(@NotNull DecoratorContext context, @NotNull Random random, @NotNull BlockPos origin) {
+        return applyModifiers(context, random, origin, 0);
+    }
+
+    /**
+     * Moves a planned position onto the current surface by running the wrapped {@link PlacementModifier}s again,
+     * starting at the {@link SurfacePlacementModifier}. Positions of trees without one are kept as they were planned.
+     */
+    @NotNull Stream<BlockPos> resolveSurface(@NotNull DecoratorContext context, @NotNull Random random, @NotNull BlockPos planned) {
+        return surfaceIndex < 0 ? Stream.of(planned) : applyModifiers(context, random, planned, surfaceIndex);
+    }
+
+    private @NotNull Stream<BlockPos> applyModifiers(@NotNull DecoratorContext context, @NotNull Random random, @NotNull BlockPos origin, int first) {
+        Stream<BlockPos> positions = Stream.of(origin);
+
+        for (PlacementModifier modifier : candidateModifiers.subList(first, candidateModifiers.size())) {
+            positions = positions.flatMap(pos -> modifier.getPositions(context, random, pos));
+        }
+
+        return positions;
+    }
+
+    @Override
+    public Stream<BlockPos> getPositions(DecoratorContext context, Random random, BlockPos pos) {
+        Identifier tree = this.tree;
+        if (tree == null) return getCandidates(context, random, pos);
+
+        return TreePlanner.getPositions(context, tree, random, pos);
+    }
+
+    @Override
+    public PlacementModifierType<?> getType() {
+        return ArctreePlacementModifiers.PLANNED;
+    }
+}
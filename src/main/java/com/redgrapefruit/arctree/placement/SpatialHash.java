@@ -0,0 +1,63 @@
+package com.redgrapefruit.arctree.placement;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Keeps track of the horizontal circles claimed by trees, in cells of 8x8 blocks, so that checking a new tree only
+ * looks at the trees around it.
+ * <br><br>
+ * Two trees collide if the distance between their origins is at most the sum of their radii.
+ */
+@ApiStatus.Internal
+public final class SpatialHash {
+    private static final int CELL_SHIFT = 3;
+
+    /**
+     * Every claimed circle as its x, z and radius, one after another
+     */
+    private final Long2ObjectMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+    private int maxRadius = 0;
+
+    /**
+     * Claims a circle if it doesn't collide with any claimed one.
+     *
+     * @return {@code true} if the circle was claimed
+     */
+    public boolean tryClaim(int x, int z, int radius) {
+        if (collides(x, z, radius)) return false;
+
+        IntArrayList cell = cells.computeIfAbsent(ChunkPos.toLong(x >> CELL_SHIFT, z >> CELL_SHIFT), key -> new IntArrayList());
+        cell.add(x);
+        cell.add(z);
+        cell.add(radius);
+
+        maxRadius = Math.max(maxRadius, radius);
+        return true;
+    }
+
+    public boolean collides(int x, int z, int radius) {
+        // No claimed circle is larger than maxRadius, so nothing further away can reach this one
+        int reach = radius + maxRadius;
+
+        for (int cellX = (x - reach) >> CELL_SHIFT; cellX <= (x + reach) >> CELL_SHIFT; cellX++) {
+            for (int cellZ = (z - reach) >> CELL_SHIFT; cellZ <= (z + reach) >> CELL_SHIFT; cellZ++) {
+                IntArrayList cell = cells.get(ChunkPos.toLong(cellX, cellZ));
+                if (cell == null) continue;
+
+                for (int i = 0; i < cell.size(); i += 3) {
+                    int dx = cell.getInt(i) - x;
+                    int dz = cell.getInt(i + 1) - z;
+                    int distance = cell.getInt(i + 2) + radius;
+
+                    if (dx * dx + dz * dz <= distance * distance) return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
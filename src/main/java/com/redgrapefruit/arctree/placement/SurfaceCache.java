@@ -0,0 +1,194 @@
+package com.redgrapefruit.arctree.placement;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.tag.BlockTags;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.StructureWorldAccess;
+import net.minecraft.world.WorldAccess;
+import net.minecraft.world.chunk.Chunk;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+
+/**
+ * A snapshot of the surface of the chunk that is currently being decorated, shared by all Arctree trees in it.
+ * <br><br>
+ * For every column it holds the {@link Heightmap.Type#MOTION_BLOCKING} surface height, the {@link Ground} the surface
+ * stands on and whether that block holds a fluid, packed into a single {@code int}. The snapshot is taken when the
+ * first Arctree tree asks for it during the {@code VEGETAL_DECORATION} step and thrown away once the chunk has been
+ * decorated.
+ * <br><br>
+ * Every tree placed after the snapshot marks the columns it covers as dirty, since a later tree must not take the old
+ * surface under its canopy or on its trunk for free ground. Dirty columns aren't read again, {@link #get} treats them
+ * like columns that aren't cached.
+ * <br><br>
+ * The cache is confined to the world generation thread decorating the chunk. Outside of chunk decoration, for columns
+ * outside the decorated chunk or for dirty columns, {@link #get} returns {@code null} and callers query the world
+ * directly.
+ */
+public final class SurfaceCache {
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private static final int HEIGHT_MASK = 0xFFFF;
+    private static final int GROUND_SHIFT = 16;
+    private static final int GROUND_MASK = 0b111;
+    private static final int FLUID_FLAG = 1 << 19;
+
+    private static final Ground[] GROUNDS = Ground.values();
+
+    private final int bottomY;
+    private final int[] columns = new int[16 * 16];
+    private final BitSet dirty = new BitSet(16 * 16);
+
+    private SurfaceCache(@NotNull StructureWorldAccess world, @NotNull Chunk chunk) {
+        this.bottomY = world.getBottomY();
+
+        ChunkPos chunkPos = chunk.getPos();
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        for (int localZ = 0; localZ < 16; localZ++) {
+            for (int localX = 0; localX < 16; localX++) {
+                int x = chunkPos.getStartX() + localX;
+                int z = chunkPos.getStartZ() + localZ;
+                int surfaceY = world.getTopY(Heightmap.Type.MOTION_BLOCKING, x, z);
+
+                BlockState ground = chunk.getBlockState(pos.set(x, surfaceY - 1, z));
+
+                int packed = (surfaceY - bottomY) & HEIGHT_MASK;
+                packed |= Ground.of(ground).ordinal() << GROUND_SHIFT;
+                if (!ground.getFluidState().isEmpty()) packed |= FLUID_FLAG;
+
+                columns[localX + localZ * 16] = packed;
+            }
+        }
+    }
+
+    /**
+     * Returns the surface cache for the column at the given position.
+     *
+     * @param world The world of the current generation context
+     * @param pos Any position in the column
+     * @return The {@link SurfaceCache} or {@code null} if the column isn't part of the chunk being decorated or a tree
+     *         has been placed on it since the snapshot was taken
+     */
+    public static @Nullable SurfaceCache get(@NotNull StructureWorldAccess world, @NotNull BlockPos pos) {
+        Scope scope = SCOPE.get();
+        if (scope == null || scope.world != world) return null;
+
+        if ((pos.getX() >> 4) != scope.chunk.getPos().x || (pos.getZ() >> 4) != scope.chunk.getPos().z) return null;
+
+        if (scope.cache == null) scope.cache = new SurfaceCache(world, scope.chunk);
+        return scope.cache.dirty.get(index(pos.getX(), pos.getZ())) ? null : scope.cache;
+    }
+
+    /**
+     * Marks the columns of a placed tree as dirty. Called by the {@code TreeFeatureMixin} and the
+     * {@code StructureTreeFeature}.
+     *
+     * @param world The world the tree was placed in
+     * @param box The box around all blocks of the tree
+     */
+    @ApiStatus.Internal
+    public static void markDirty(@NotNull WorldAccess world, @NotNull BlockBox box) {
+        Scope scope = SCOPE.get();
+        // Columns changed before the snapshot is taken end up in it anyway
+        if (scope == null || scope.world != world || scope.cache == null) return;
+
+        ChunkPos chunkPos = scope.chunk.getPos();
+        int minX = Math.max(box.getMinX(), chunkPos.getStartX());
+        int minZ = Math.max(box.getMinZ(), chunkPos.getStartZ());
+        int maxX = Math.min(box.getMaxX(), chunkPos.getEndX());
+        int maxZ = Math.min(box.getMaxZ(), chunkPos.getEndZ());
+
+        for (int z = minZ; z <= maxZ; z++) {
+            for (int x = minX; x <= maxX; x++) {
+                scope.cache.dirty.set(index(x, z));
+            }
+        }
+    }
+
+    /**
+     * Marks the column of a single placed block as dirty.
+     */
+    @ApiStatus.Internal
+    public static void markDirty(@NotNull WorldAccess world, @NotNull BlockPos pos) {
+        markDirty(world, new BlockBox(pos));
+    }
+
+    /**
+     * Starts the decoration of a chunk on the current thread. Called by the {@code ChunkGeneratorMixin}.
+     */
+    @ApiStatus.Internal
+    public static void begin(@NotNull StructureWorldAccess world, @NotNull Chunk chunk) {
+        SCOPE.set(new Scope(world, chunk));
+    }
+
+    /**
+     * Ends the decoration of a chunk on the current thread, discarding the cache.
+     */
+    @ApiStatus.Internal
+    public static void end() {
+        SCOPE.remove();
+    }
+
+    /**
+     * Returns the Y of the first free block above the {@link Heightmap.Type#MOTION_BLOCKING} surface.
+     */
+    public int getSurfaceY(int x, int z) {
+        return (columns[index(x, z)] & HEIGHT_MASK) + bottomY;
+    }
+
+    /**
+     * Returns what kind of block the surface stands on.
+     */
+    public @NotNull Ground getGround(int x, int z) {
+        return GROUNDS[(columns[index(x, z)] >>> GROUND_SHIFT) & GROUND_MASK];
+    }
+
+    /**
+     * Returns whether the block the surface stands on holds a fluid, like the top of a lake.
+     */
+    public boolean hasFluid(int x, int z) {
+        return (columns[index(x, z)] & FLUID_FLAG) != 0;
+    }
+
+    private static int index(int x, int z) {
+        return (x & 15) + (z & 15) * 16;
+    }
+
+    /**
+     * A rough classification of the block under the surface
+     */
+    public enum Ground {
+        SOIL,
+        SAND,
+        STONE,
+        OTHER;
+
+        private static @NotNull Ground of(@NotNull BlockState state) {
+            if (state.isIn(BlockTags.DIRT)) return SOIL;
+            if (state.isIn(BlockTags.SAND)) return SAND;
+            if (state.isIn(BlockTags.BASE_STONE_OVERWORLD) || state.isIn(BlockTags.BASE_STONE_NETHER)) return STONE;
+            return OTHER;
+        }
+    }
+
+    /**
+     * The chunk being decorated on a thread and its lazily created cache
+     */
+    private static final class Scope {
+        private final @NotNull StructureWorldAccess world;
+        private final @NotNull Chunk chunk;
+        private @Nullable SurfaceCache cache;
+
+        private Scope(@NotNull StructureWorldAccess world, @NotNull Chunk chunk) {
+            this.world = world;
+            this.chunk = chunk;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.redgrapefruit.arctree.placement;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.gen.decorator.DecoratorContext;
+import net.minecraft.world.gen.decorator.HeightmapPlacementModifier;
+import net.minecraft.world.gen.decorator.PlacementModifier;
+import net.minecraft.world.gen.decorator.PlacementModifierType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Moves positions onto the {@link Heightmap.Type#MOTION_BLOCKING} surface, like a {@link HeightmapPlacementModifier},
+ * but reads the height from the {@link SurfaceCache} while a chunk is being decorated. Columns that trees have been
+ * placed on since the cache was taken are read from the live heightmap, just like outside of decoration.
+ */
+public final class SurfacePlacementModifier extends PlacementModifier {
+    private static final SurfacePlacementModifier INSTANCE = new SurfacePlacementModifier();
+
+    public static final Codec<SurfacePlacementModifier> CODEC = Codec.unit(() -> INSTANCE);
+
+    private SurfacePlacementModifier() {}
+
+    public static @NotNull SurfacePlacementModifier of() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Stream<BlockPos> getPositions(DecoratorContext context, Random random, BlockPos pos) {
+        int x = pos.getX();
+        int z = pos.getZ();
+
+        SurfaceCache cache = SurfaceCache.get(context.getWorld(), pos);
+        int y = cache != null ? cache.getSurfaceY(x, z) : context.getTopY(Heightmap.Type.MOTION_BLOCKING, x, z);
+
+        return y > context.getBottomY() ? Stream.of(new BlockPos(x, y, z)) : Stream.of();
+    }
+
+    @Override
+    public PlacementModifierType<?> getType() {
+        return ArctreePlacementModifiers.SURFACE;
+    }
+}
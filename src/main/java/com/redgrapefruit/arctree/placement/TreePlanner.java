@@ -0,0 +1,161 @@
+package com.redgrapefruit.arctree.placement;
+
+import com.redgrapefruit.arctree.ArctreeRandom;
+import com.redgrapefruit.arctree.ConfiguredTree;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.StructureWorldAccess;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.chunk.ChunkGenerator;
+import net.minecraft.world.gen.decorator.DecoratorContext;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Plans the positions of all trees using a {@link PlannedPlacementModifier} in a chunk at once, before any of them is
+ * placed.
+ * <br><br>
+ * When the first planned tree is decorated in a chunk, the candidate positions of every planned tree are gathered,
+ * keeping only those in biomes the tree is found in. The candidates are then claimed in order of their collision
+ * radius, largest first, and a candidate is dropped if its radius overlaps one that was already claimed. Claimed
+ * candidates are kept in a {@link SpatialHash}, so every check only looks at nearby trees. Only the surviving candidates
+ * reach the tree feature, so no placers run for trees that would've grown into each other.
+ * <br><br>
+ * The plan only fixes where a tree goes horizontally. Other features of the step, and trees planned before, may still
+ * be placed between planning and the tree's own turn, so the height of every survivor is resolved again when its own
+ * {@code PlacedFeature} runs, through the {@link SurfaceCache} or the world for columns that have changed since.
+ * <br><br>
+ * Only active on the thread decorating a chunk, between {@link #begin} and {@link #end}. Elsewhere, like during retrogen,
+ * planned trees are placed at all of their candidates.
+ */
+@ApiStatus.Internal
+public final class TreePlanner {
+    private static final ThreadLocal<TreePlanner> CURRENT = new ThreadLocal<>();
+
+    /**
+     * All planned trees in the order they were registered, which keeps plans reproducible
+     */
+    private static final Map<Identifier, PlannedTree> TREES = new LinkedHashMap<>();
+
+    private final @NotNull StructureWorldAccess world;
+    private final @NotNull ChunkGenerator generator;
+    private final @NotNull ChunkPos chunkPos;
+
+    /**
+     * The surviving positions of each tree, {@code null} until the chunk has been planned
+     */
+    private @Nullable Map<Identifier, List<BlockPos>> survivors;
+
+    private TreePlanner(@NotNull StructureWorldAccess world, @NotNull ChunkGenerator generator, @NotNull ChunkPos chunkPos) {
+        this.world = world;
+        this.generator = generator;
+        this.chunkPos = chunkPos;
+    }
+
+    static void register(@NotNull Identifier id, @NotNull ConfiguredTree tree, @NotNull PlannedPlacementModifier modifier) {
+        TREES.put(id, new PlannedTree(tree, modifier));
+    }
+
+    public static void begin(@NotNull StructureWorldAccess world, @NotNull Chunk chunk, @NotNull ChunkGenerator generator) {
+        CURRENT.set(new TreePlanner(world, generator, chunk.getPos()));
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the positions of a tree in the chunk of {@code pos}, planning the chunk first if needed.
+     */
+    static @NotNull Stream<BlockPos> getPositions(@NotNull DecoratorContext context, @NotNull Identifier id, @NotNull Random random, @NotNull BlockPos pos) {
+        PlannedTree tree = TREES.get(id);
+        if (tree == null) return Stream.of();
+
+        TreePlanner planner = CURRENT.get();
+
+        if (planner == null || planner.world != context.getWorld() || !planner.chunkPos.equals(new ChunkPos(pos))) {
+            return tree.modifier.getCandidates(context, random, pos);
+        }
+
+        if (planner.survivors == null) planner.survivors = planner.plan(pos);
+
+        // Lazy, so every tree sees the ground as the trees placed before it left it
+        return planner.survivors.getOrDefault(id, List.of())
+                .stream()
+                .flatMap(planned -> tree.modifier.resolveSurface(context, random, planned));
+    }
+
+    private @NotNull Map<Identifier, List<BlockPos>> plan(@NotNull BlockPos origin) {
+        Registry<Biome> biomes = world.getRegistryManager().get(Registry.BIOME_KEY);
+        List<Candidate> candidates = new ArrayList<>();
+
+        for (Map.Entry<Identifier, PlannedTree> entry : TREES.entrySet()) {
+            Identifier id = entry.getKey();
+            PlannedTree tree = entry.getValue();
+
+            // Every tree gets its own stream, so adding a tree doesn't move the others
+            DecoratorContext context = new DecoratorContext(world, generator, Optional.of(tree.tree.getPlacedFeature()));
+            Random random = new ArctreeRandom(world.getSeed() ^ chunkPos.toLong() * 341873128712L ^ id.hashCode() * 132897987541L);
+            int radius = tree.modifier.getCollisionRadius();
+
+            tree.modifier.getCandidates(context, random, origin).forEach(pos -> {
+                Optional<RegistryKey<Biome>> biome = biomes.getKey(world.getBiome(pos));
+
+                if (biome.isPresent() && tree.tree.isFoundIn(biome.get())) {
+                    candidates.add(new Candidate(id, pos.toImmutable(), radius));
+                }
+            });
+        }
+
+        // Large trees are the hardest to fit, so they claim their space first. The sort is stable, which keeps it reproducible
+        candidates.sort(Comparator.comparingInt((Candidate candidate) -> candidate.radius).reversed());
+
+        SpatialHash claimed = new SpatialHash();
+        Map<Identifier, List<BlockPos>> survivors = new HashMap<>();
+
+        for (Candidate candidate : candidates) {
+            if (!claimed.tryClaim(candidate.pos.getX(), candidate.pos.getZ(), candidate.radius)) continue;
+
+            survivors.computeIfAbsent(candidate.tree, key -> new ArrayList<>()).add(candidate.pos);
+        }
+
+        return survivors;
+    }
+
+    private static final class PlannedTree {
+        private final @NotNull ConfiguredTree tree;
+        private final @NotNull PlannedPlacementModifier modifier;
+
+        private PlannedTree(@NotNull ConfiguredTree tree, @NotNull PlannedPlacementModifier modifier) {
+            this.tree = tree;
+            this.modifier = modifier;
+        }
+    }
+
+    private static final class Candidate {
+        private final @NotNull Identifier tree;
+        private final @NotNull BlockPos pos;
+        private final int radius;
+
+        private Candidate(@NotNull Identifier tree, @NotNull BlockPos pos, int radius) {
+            this.tree = tree;
+            this.pos = pos;
+            this.radius = radius;
+        }
+    }
+}
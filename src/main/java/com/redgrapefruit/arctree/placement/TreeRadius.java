@@ -0,0 +1,70 @@
+package com.redgrapefruit.arctree.placement;
+
+import com.redgrapefruit.arctree.mixin.FoliagePlacerAccessor;
+import com.redgrapefruit.arctree.mixin.TrunkPlacerAccessor;
+import net.minecraft.world.gen.foliage.DarkOakFoliagePlacer;
+import net.minecraft.world.gen.foliage.FoliagePlacer;
+import net.minecraft.world.gen.foliage.JungleFoliagePlacer;
+import net.minecraft.world.gen.foliage.MegaPineFoliagePlacer;
+import net.minecraft.world.gen.trunk.DarkOakTrunkPlacer;
+import net.minecraft.world.gen.trunk.FancyTrunkPlacer;
+import net.minecraft.world.gen.trunk.ForkingTrunkPlacer;
+import net.minecraft.world.gen.trunk.GiantTrunkPlacer;
+import net.minecraft.world.gen.trunk.MegaJungleTrunkPlacer;
+import net.minecraft.world.gen.trunk.TrunkPlacer;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Estimates the horizontal radius of trees made out of a {@link TrunkPlacer} and a {@link FoliagePlacer}, used as
+ * the default collision radius of planned trees.
+ * <br><br>
+ * The radius is the largest radius of the {@link FoliagePlacer}, plus how far its foliage may grow past that radius,
+ * plus how far the trunk and its branches may reach from the tree's origin. The vanilla placers are accounted for.
+ * Other placers only count with their configured foliage radius, so for those the estimate is a lower bound and the
+ * tree should set its collision radius itself.
+ */
+@ApiStatus.Internal
+public final class TreeRadius {
+    private TreeRadius() {}
+
+    public static int estimate(@NotNull TrunkPlacer trunkPlacer, @NotNull FoliagePlacer foliagePlacer) {
+        return ((FoliagePlacerAccessor) foliagePlacer).getRadius().getMax() + getFoliageOverhang(foliagePlacer) + getTrunkReach(trunkPlacer);
+    }
+
+    /**
+     * How far the foliage may grow past the configured radius
+     */
+    private static int getFoliageOverhang(@NotNull FoliagePlacer foliagePlacer) {
+        // The lower layers of mega pine crowns widen by up to 3, and every other layer by 1 more
+        if (foliagePlacer instanceof MegaPineFoliagePlacer) return 4;
+        // Dark oak canopies are 2 to 3 wider than the radius around giant trunks
+        if (foliagePlacer instanceof DarkOakFoliagePlacer) return 3;
+        if (foliagePlacer instanceof JungleFoliagePlacer) return 1;
+
+        return 0;
+    }
+
+    /**
+     * How far the trunk and its branches may reach horizontally from the origin, including the second column of giant
+     * trunks
+     */
+    private static int getTrunkReach(@NotNull TrunkPlacer trunkPlacer) {
+        // Branches grow up to a third of the tree's height away from the trunk
+        if (trunkPlacer instanceof FancyTrunkPlacer) return (int) Math.ceil(getMaxHeight(trunkPlacer) * 0.34) + 1;
+        // Branches stick out up to 4 blocks from the side of the trunk
+        if (trunkPlacer instanceof MegaJungleTrunkPlacer) return 5;
+        // The two forks lean up to 3 blocks each, in different directions
+        if (trunkPlacer instanceof ForkingTrunkPlacer) return 4;
+        // The trunk leans up to 2 blocks, and roots and branches grow one further
+        if (trunkPlacer instanceof DarkOakTrunkPlacer) return 3;
+        if (trunkPlacer instanceof GiantTrunkPlacer) return 1;
+
+        return 0;
+    }
+
+    private static int getMaxHeight(@NotNull TrunkPlacer trunkPlacer) {
+        TrunkPlacerAccessor accessor = (TrunkPlacerAccessor) trunkPlacer;
+        return accessor.getBaseHeight() + accessor.getFirstRandomHeight() + accessor.getSecondRandomHeight();
+    }
+}
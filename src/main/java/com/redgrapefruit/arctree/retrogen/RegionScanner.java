@@ -0,0 +1,255 @@
+package com.redgrapefruit.arctree.retrogen;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.storage.VersionedChunkStorage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Streams the positions of all fully generated chunks of a world out of its region files.
+ * <br><br>
+ * The 4 KiB location table at the start of every region file tells which chunks have been saved at all. A saved chunk
+ * may still be an unfinished proto-chunk though, like the ones at the edge of explored areas, so the stored
+ * {@code Status} of every saved chunk is read from the world's chunk storage on this thread. Chunks are handed to the
+ * server thread through a bounded queue, so the scanner never gets far ahead of the per-tick budget and memory use
+ * doesn't depend on the size of the world.
+ * <br><br>
+ * A chunk is only handed out if it and all 8 of its neighbours are {@link ChunkStatus#FULL}, since trees may grow over
+ * the chunk border and loading anything less would finish generating it, which pulls in new chunks around it.
+ */
+final class RegionScanner implements Runnable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * The amount of region location tables kept around for neighbour lookups
+     */
+    private static final int CACHED_REGIONS = 9;
+
+    private final @NotNull Path regionDirectory;
+    private final @NotNull VersionedChunkStorage storage;
+    private final @NotNull BlockingQueue<ChunkPos> queue;
+    private final @NotNull Predicate<ChunkPos> skip;
+
+    private final Map<Long, Region> regionCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Region> eldest) {
+            return size() > CACHED_REGIONS;
+        }
+    };
+
+    private volatile boolean cancelled = false;
+    private volatile boolean finished = false;
+    private volatile boolean deferred = false;
+
+    /**
+     * @param regionDirectory The {@code region} directory of the world
+     * @param storage The chunk storage of the world, which the stored chunks are read through
+     * @param queue The queue that found chunks are put into
+     * @param skip Tests if a chunk has already been processed and can be skipped
+     */
+    RegionScanner(
+            @NotNull Path regionDirectory,
+            @NotNull VersionedChunkStorage storage,
+            @NotNull BlockingQueue<ChunkPos> queue,
+            @NotNull Predicate<ChunkPos> skip) {
+
+        this.regionDirectory = regionDirectory;
+        this.storage = storage;
+        this.queue = queue;
+        this.skip = skip;
+    }
+
+    @Override
+    public void run() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(regionDirectory, "r.*.*.mca")) {
+            for (Path file : files) {
+                if (cancelled) return;
+
+                long region = parseRegion(file);
+                if (region == Long.MIN_VALUE) continue;
+
+                scanRegion(ChunkPos.getPackedX(region), ChunkPos.getPackedZ(region));
+            }
+        } catch (NoSuchFileException ignored) {
+            // The world has no region files yet, so there is nothing to retro-generate
+        } catch (IOException e) {
+            LOGGER.error("Arctree retrogen failed to scan " + regionDirectory, e);
+            // Don't let a broken scan mark the trees as completed
+            deferred = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finished = true;
+        }
+    }
+
+    private void scanRegion(int regionX, int regionZ) throws IOException, InterruptedException {
+        Region region = getRegion(regionX, regionZ);
+        if (region == null) return;
+
+        for (int index = region.saved.nextSetBit(0); index >= 0; index = region.saved.nextSetBit(index + 1)) {
+            if (cancelled) return;
+
+            ChunkPos pos = new ChunkPos((regionX << 5) + (index & 31), (regionZ << 5) + (index >>> 5));
+
+            if (skip.test(pos)) continue;
+
+            if (!isFull(pos.x, pos.z) || !hasFullNeighbours(pos)) {
+                deferred = true;
+                continue;
+            }
+
+            // Wait for the server thread to catch up, but don't block a shutdown
+            while (!queue.offer(pos, 100L, TimeUnit.MILLISECONDS)) {
+                if (cancelled) return;
+            }
+        }
+    }
+
+    private boolean hasFullNeighbours(@NotNull ChunkPos pos) throws IOException {
+        for (int x = pos.x - 1; x <= pos.x + 1; x++) {
+            for (int z = pos.z - 1; z <= pos.z + 1; z++) {
+                if ((x != pos.x || z != pos.z) && !isFull(x, z)) return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether a chunk has been saved with the {@link ChunkStatus#FULL} status. The status is read once per chunk
+     * and then kept with its region.
+     */
+    private boolean isFull(int chunkX, int chunkZ) throws IOException {
+        Region region = getRegion(chunkX >> 5, chunkZ >> 5);
+        if (region == null) return false;
+
+        int index = (chunkX & 31) + (chunkZ & 31) * 32;
+        if (!region.saved.get(index)) return false;
+
+        if (!region.checked.get(index)) {
+            region.checked.set(index);
+
+            if (readStatus(storage.getNbt(new ChunkPos(chunkX, chunkZ))) == ChunkStatus.FULL) region.full.set(index);
+        }
+
+        return region.full.get(index);
+    }
+
+    /**
+     * Reads the status out of stored chunk NBT, which is kept in the {@code Level} tag by versions before 1.18
+     */
+    private static @Nullable ChunkStatus readStatus(@Nullable NbtCompound nbt) {
+        if (nbt == null) return null;
+
+        if (!nbt.contains("Status", NbtElement.STRING_TYPE) && nbt.contains("Level", NbtElement.COMPOUND_TYPE)) {
+            nbt = nbt.getCompound("Level");
+        }
+
+        if (!nbt.contains("Status", NbtElement.STRING_TYPE)) return null;
+
+        return ChunkStatus.byId(nbt.getString("Status"));
+    }
+
+    /**
+     * Reads the location table of a region file into a set of the chunks that are saved in it.
+     *
+     * @return The region or {@code null} if it doesn't exist
+     */
+    private @Nullable Region getRegion(int regionX, int regionZ) throws IOException {
+        long key = ChunkPos.toLong(regionX, regionZ);
+        if (regionCache.containsKey(key)) return regionCache.get(key);
+
+        Region region = null;
+        Path file = regionDirectory.resolve("r." + regionX + "." + regionZ + ".mca");
+
+        if (Files.isRegularFile(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(4096);
+                while (header.hasRemaining()) {
+                    if (channel.read(header) < 0) break;
+                }
+                header.flip();
+
+                region = new Region();
+                for (int index = 0; header.remaining() >= 4; index++) {
+                    // Every entry holds the sector offset and count, both are zero for missing chunks
+                    if (header.getInt() != 0) region.saved.set(index);
+                }
+            }
+        }
+
+        regionCache.put(key, region);
+        return region;
+    }
+
+    private static long parseRegion(@NotNull Path file) {
+        String[] parts = file.getFileName().toString().split("\\.");
+        if (parts.length != 4) return Long.MIN_VALUE;
+
+        try {
+            return ChunkPos.toLong(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Whether the scanner has gone through all region files
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Whether some chunks were left out, because they or their neighbours aren't fully generated yet or a region
+     * couldn't be read
+     */
+    boolean hasDeferred() {
+        return deferred;
+    }
+
+    /**
+     * The chunks of a region file, indexed like in its location table
+     */
+    private static final class Region {
+        /**
+         * Chunks that have been saved at any status
+         */
+        private final BitSet saved = new BitSet(1024);
+
+        /**
+         * Saved chunks whose status has been read
+         */
+        private final BitSet checked = new BitSet(1024);
+
+        /**
+         * Saved chunks that are fully generated
+         */
+        private final BitSet full = new BitSet(1024);
+    }
+}
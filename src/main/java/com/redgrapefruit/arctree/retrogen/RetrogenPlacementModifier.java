@@ -0,0 +1,72 @@
+package com.redgrapefruit.arctree.retrogen;
+
+import com.mojang.serialization.Codec;
+import com.redgrapefruit.arctree.ConfiguredTree;
+import com.redgrapefruit.arctree.placement.ArctreePlacementModifiers;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.decorator.DecoratorContext;
+import net.minecraft.world.gen.decorator.PlacementModifier;
+import net.minecraft.world.gen.decorator.PlacementModifierType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * A pass-through {@link PlacementModifier} that marks every chunk its tree is generated in as processed,
+ * so that the {@link RetrogenService} skips chunks that already got the tree during normal world generation.
+ * <br><br>
+ * It's put in front of all other modifiers by {@code TreeBuilder#retrogen()} and bound to the tree's
+ * {@link Identifier} once the {@link ConfiguredTree} is registered.
+ */
+public final class RetrogenPlacementModifier extends PlacementModifier {
+    public static final Codec<RetrogenPlacementModifier> CODEC = Identifier.CODEC
+            .fieldOf("tree")
+            .xmap(RetrogenPlacementModifier::new, modifier -> Objects.requireNonNull(modifier.tree, "Unbound retrogen marker"))
+            .codec();
+
+    private volatile @Nullable Identifier tree;
+
+    /**
+     * Creates a marker that isn't bound to a tree yet
+     */
+    public RetrogenPlacementModifier() {}
+
+    private RetrogenPlacementModifier(@NotNull Identifier tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Binds this marker to a tree, done by {@link ConfiguredTree#register(Identifier)}
+     *
+     * @param tree The tree's {@link Identifier}
+     */
+    public void bind(@NotNull Identifier tree) {
+        Objects.requireNonNull(tree, "Tree ID must not be null");
+
+        if (this.tree != null && !this.tree.equals(tree))
+            throw new RuntimeException("Retrogen marker is already bound to " + this.tree);
+
+        this.tree = tree;
+    }
+
+    @Override
+    public Stream<BlockPos> getPositions(DecoratorContext context, Random random, BlockPos pos) {
+        Identifier tree = this.tree;
+
+        if (tree != null) {
+            RetrogenService.markProcessed(context.getWorld().toServerWorld(), tree, new ChunkPos(pos));
+        }
+
+        return Stream.of(pos);
+    }
+
+    @Override
+    public PlacementModifierType<?> getType() {
+        return ArctreePlacementModifiers.RETROGEN;
+    }
+}
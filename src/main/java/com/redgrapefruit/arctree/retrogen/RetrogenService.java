@@ -0,0 +1,319 @@
+package com.redgrapefruit.arctree.retrogen;
+
+import com.redgrapefruit.arctree.ArctreeRandom;
+import com.redgrapefruit.arctree.ConfiguredTree;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.dimension.DimensionType;
+import net.minecraft.world.gen.chunk.ChunkGenerator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Retro-generates newly added trees into chunks that were generated before the tree existed.
+ * <br><br>
+ * Region files are scanned on a background thread by a {@link RegionScanner}, which streams the fully generated chunks
+ * to the server thread. There, every chunk and its neighbours are loaded in the background with a ticket, and up to
+ * {@link #setChunksPerTick(int)} loaded chunks are processed every tick as long as the {@link #setTickBudget(long)}
+ * isn't used up. Progress is kept in the world's {@link RetrogenState}, so a
+ * restarted server continues where it left off.
+ * <br><br>
+ * Trees opt into retrogen with {@code TreeBuilder#retrogen()}, everything else happens automatically.
+ */
+public final class RetrogenService {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * The amount of chunks a scanner may be ahead of the server thread
+     */
+    private static final int QUEUE_CAPACITY = 256;
+
+    /**
+     * The amount of chunks that may be loading at once in every world
+     */
+    private static final int MAX_LOADING = 16;
+
+    /**
+     * Keeps a chunk and its neighbours loaded until the trees are retro-generated into it
+     */
+    private static final ChunkTicketType<ChunkPos> TICKET = ChunkTicketType.create("arctree_retrogen", Comparator.comparingLong(ChunkPos::toLong));
+
+    private static final Map<Identifier, ConfiguredTree> TREES = new LinkedHashMap<>();
+    private static final Map<ServerWorld, RetrogenState> STATES = new ConcurrentHashMap<>();
+    private static final List<Task> TASKS = new ArrayList<>();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Arctree Retrogen");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static int chunksPerTick = 4;
+    private static long tickBudgetNanos = 5_000_000L;
+    private static boolean initialized = false;
+
+    private RetrogenService() {}
+
+    /**
+     * Adds a tree to be retro-generated. Called by {@link ConfiguredTree#register(Identifier)}.
+     *
+     * @param id The tree's {@link Identifier}
+     * @param tree The registered tree
+     */
+    public static void register(@NotNull Identifier id, @NotNull ConfiguredTree tree) {
+        if (!initialized) {
+            ServerWorldEvents.LOAD.register((server, world) -> STATES.put(world, RetrogenState.get(world)));
+            ServerWorldEvents.UNLOAD.register((server, world) -> STATES.remove(world));
+            ServerLifecycleEvents.SERVER_STARTED.register(RetrogenService::start);
+            ServerLifecycleEvents.SERVER_STOPPING.register(server -> stop());
+            ServerTickEvents.END_SERVER_TICK.register(server -> tick());
+
+            initialized = true;
+        }
+
+        TREES.put(id, tree);
+    }
+
+    /**
+     * Sets the maximum amount of chunks retro-generated per tick, {@code 4} by default.
+     */
+    public static void setChunksPerTick(int chunksPerTick) {
+        if (chunksPerTick <= 0)
+            throw new RuntimeException("Retrogen chunks per tick must be positive: " + chunksPerTick);
+
+        RetrogenService.chunksPerTick = chunksPerTick;
+    }
+
+    /**
+     * Sets the time in milliseconds that retrogen may take up every tick, {@code 5} by default.
+     */
+    public static void setTickBudget(long millis) {
+        if (millis <= 0)
+            throw new RuntimeException("Retrogen tick budget must be positive: " + millis);
+
+        RetrogenService.tickBudgetNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Marks a chunk as processed for a tree, if the world is tracked.
+     */
+    static void markProcessed(@NotNull ServerWorld world, @NotNull Identifier tree, @NotNull ChunkPos pos) {
+        RetrogenState state = STATES.get(world);
+        if (state != null) state.markProcessed(tree, pos);
+    }
+
+    private static void start(@NotNull MinecraftServer server) {
+        for (ServerWorld world : server.getWorlds()) {
+            RetrogenState state = STATES.computeIfAbsent(world, RetrogenState::get);
+
+            Set<RegistryKey<Biome>> biomes = world.getChunkManager().getChunkGenerator().getBiomeSource().getBiomes()
+                    .stream()
+                    .map(biome -> world.getRegistryManager().get(Registry.BIOME_KEY).getKey(biome))
+                    .flatMap(Optional::stream)
+                    .collect(Collectors.toSet());
+
+            // Only trees that can appear in this world and aren't done yet
+            List<Identifier> pending = TREES.entrySet()
+                    .stream()
+                    .filter(entry -> !state.isCompleted(entry.getKey()))
+                    .filter(entry -> biomes.stream().anyMatch(entry.getValue()::isFoundIn))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+
+            if (pending.isEmpty()) continue;
+
+            Path regionDirectory = DimensionType
+                    .getSaveDirectory(world.getRegistryKey(), server.getSavePath(WorldSavePath.ROOT))
+                    .resolve("region");
+
+            Task task = new Task(world, state, pending, regionDirectory);
+            TASKS.add(task);
+            EXECUTOR.execute(task.scanner);
+
+            LOGGER.info("Retro-generating {} Arctree tree(s) in {}", pending.size(), world.getRegistryKey().getValue());
+        }
+    }
+
+    private static void stop() {
+        TASKS.forEach(Task::cancel);
+        TASKS.clear();
+    }
+
+    private static void tick() {
+        if (TASKS.isEmpty()) return;
+
+        long deadline = System.nanoTime() + tickBudgetNanos;
+        int budget = chunksPerTick;
+
+        Iterator<Task> iterator = TASKS.iterator();
+        while (iterator.hasNext() && budget > 0 && System.nanoTime() < deadline) {
+            Task task = iterator.next();
+            budget -= task.process(budget, deadline);
+
+            if (task.isDone()) {
+                task.complete();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * The retrogen of all pending trees in a single world
+     */
+    private static final class Task {
+        private final @NotNull ServerWorld world;
+        private final @NotNull RetrogenState state;
+        private final @NotNull List<Identifier> trees;
+        private final @NotNull BlockingQueue<ChunkPos> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final @NotNull RegionScanner scanner;
+
+        /**
+         * Chunks whose ticket has been added, in the order they were taken from the queue
+         */
+        private final @NotNull ArrayDeque<ChunkPos> loading = new ArrayDeque<>();
+
+        /**
+         * Whether a chunk was unloaded again before it could be processed
+         */
+        private boolean skipped = false;
+
+        private Task(@NotNull ServerWorld world, @NotNull RetrogenState state, @NotNull List<Identifier> trees, @NotNull Path regionDirectory) {
+            this.world = world;
+            this.state = state;
+            this.trees = trees;
+            this.scanner = new RegionScanner(
+                    regionDirectory,
+                    world.getChunkManager().threadedAnvilChunkStorage,
+                    queue,
+                    pos -> trees.stream().allMatch(tree -> state.isProcessed(tree, pos)));
+        }
+
+        /**
+         * Processes loaded chunks and starts loading queued ones within the budget.
+         *
+         * @return The amount of processed chunks
+         */
+        private int process(int budget, long deadline) {
+            int processed = 0;
+
+            while (processed < budget && System.nanoTime() < deadline) {
+                ChunkPos pos = loading.peek();
+
+                if (pos != null && isLoaded(pos)) {
+                    loading.poll();
+                    generate(pos);
+                    world.getChunkManager().removeTicket(TICKET, pos, 1, pos);
+
+                    processed++;
+                    continue;
+                }
+
+                if (loading.size() >= MAX_LOADING) break;
+
+                ChunkPos queued = queue.poll();
+                if (queued == null) break;
+
+                // Loads the chunk and its neighbours off the server thread. They are all fully generated, so this
+                // only reads them from disk and no new chunks get generated
+                world.getChunkManager().addTicket(TICKET, queued, 1, queued);
+                loading.add(queued);
+            }
+
+            return processed;
+        }
+
+        /**
+         * Whether the chunk and its neighbours are loaded, without waiting for them
+         */
+        private boolean isLoaded(@NotNull ChunkPos pos) {
+            for (int x = pos.x - 1; x <= pos.x + 1; x++) {
+                for (int z = pos.z - 1; z <= pos.z + 1; z++) {
+                    if (!world.getChunkManager().isChunkLoaded(x, z)) return false;
+                }
+            }
+
+            return true;
+        }
+
+        private void generate(@NotNull ChunkPos pos) {
+            if (world.getChunk(pos.x, pos.z, ChunkStatus.FULL, false) == null) {
+                skipped = true;
+                return;
+            }
+
+            ChunkGenerator generator = world.getChunkManager().getChunkGenerator();
+            BlockPos origin = new BlockPos(pos.getStartX(), world.getBottomY(), pos.getStartZ());
+            BlockPos center = new BlockPos(
+                    pos.getCenterX(),
+                    world.getTopY(Heightmap.Type.MOTION_BLOCKING, pos.getCenterX(), pos.getCenterZ()),
+                    pos.getCenterZ());
+
+            Optional<RegistryKey<Biome>> biome = world.getRegistryManager().get(Registry.BIOME_KEY).getKey(world.getBiome(center));
+
+            for (Identifier id : trees) {
+                if (state.isProcessed(id, pos)) continue;
+
+                ConfiguredTree tree = TREES.get(id);
+
+                if (biome.isPresent() && tree.isFoundIn(biome.get())) {
+                    Random random = new ArctreeRandom(world.getSeed() ^ pos.toLong() * 341873128712L ^ id.hashCode() * 132897987541L);
+                    tree.getPlacedFeature().generate(world, generator, random, origin);
+                }
+
+                state.markProcessed(id, pos);
+            }
+        }
+
+        private boolean isDone() {
+            return scanner.isFinished() && queue.isEmpty() && loading.isEmpty();
+        }
+
+        private void cancel() {
+            scanner.cancel();
+            loading.forEach(pos -> world.getChunkManager().removeTicket(TICKET, pos, 1, pos));
+            loading.clear();
+        }
+
+        private void complete() {
+            if (scanner.hasDeferred() || skipped) {
+                LOGGER.info("Paused Arctree retrogen in {}, some chunks or their neighbours aren't fully generated yet", world.getRegistryKey().getValue());
+                return;
+            }
+
+            trees.forEach(state::markCompleted);
+            LOGGER.info("Finished Arctree retrogen in {}", world.getRegistryKey().getValue());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.redgrapefruit.arctree.retrogen;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.PersistentState;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The per-world retrogen progress, saved together with the world so that retrogen resumes after a restart.
+ * <br><br>
+ * For every tree it stores a bitset of processed chunks for each region (32x32 chunks, 16 {@code long}s) until
+ * the tree has been retro-generated into the whole world, after which only the completion flag is kept.
+ * <br><br>
+ * All methods are synchronized, since chunks are marked from world generation threads.
+ */
+public final class RetrogenState extends PersistentState {
+    private static final String ID = "arctree_retrogen";
+
+    private final Map<Identifier, Long2ObjectMap<long[]>> processed = new HashMap<>();
+    private final Set<Identifier> completed = new HashSet<>();
+
+    private RetrogenState() {}
+
+    /**
+     * Gets or loads the {@link RetrogenState} of a world. Must be called on the server thread.
+     */
+    public static @NotNull RetrogenState get(@NotNull ServerWorld world) {
+        return world.getPersistentStateManager().getOrCreate(RetrogenState::fromNbt, RetrogenState::new, ID);
+    }
+
+    public synchronized boolean isCompleted(@NotNull Identifier tree) {
+        return completed.contains(tree);
+    }
+
+    public synchronized void markCompleted(@NotNull Identifier tree) {
+        completed.add(tree);
+        // The bitsets are no longer needed once the whole world is done
+        processed.remove(tree);
+        markDirty();
+    }
+
+    public synchronized boolean isProcessed(@NotNull Identifier tree, @NotNull ChunkPos pos) {
+        if (completed.contains(tree)) return true;
+
+        Long2ObjectMap<long[]> regions = processed.get(tree);
+        if (regions == null) return false;
+
+        long[] bits = regions.get(regionKey(pos));
+        if (bits == null) return false;
+
+        int index = chunkIndex(pos);
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public synchronized void markProcessed(@NotNull Identifier tree, @NotNull ChunkPos pos) {
+        if (completed.contains(tree)) return;
+
+        long[] bits = processed
+                .computeIfAbsent(tree, key -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(regionKey(pos), key -> new long[16]);
+
+        int index = chunkIndex(pos);
+        long mask = 1L << index;
+
+        if ((bits[index >>> 6] & mask) == 0) {
+            bits[index >>> 6] |= mask;
+            markDirty();
+        }
+    }
+
+    @Override
+    public synchronized NbtCompound writeNbt(NbtCompound nbt) {
+        NbtList completedList = new NbtList();
+        completed.forEach(tree -> {
+            NbtCompound entry = new NbtCompound();
+            entry.putString("Tree", tree.toString());
+            completedList.add(entry);
+        });
+        nbt.put("Completed", completedList);
+
+        NbtList processedList = new NbtList();
+        processed.forEach((tree, regions) -> {
+            NbtList regionList = new NbtList();
+
+            for (Long2ObjectMap.Entry<long[]> region : regions.long2ObjectEntrySet()) {
+                NbtCompound regionNbt = new NbtCompound();
+                regionNbt.putLong("Region", region.getLongKey());
+                regionNbt.putLongArray("Chunks", region.getValue());
+                regionList.add(regionNbt);
+            }
+
+            NbtCompound entry = new NbtCompound();
+            entry.putString("Tree", tree.toString());
+            entry.put("Regions", regionList);
+            processedList.add(entry);
+        });
+        nbt.put("Processed", processedList);
+
+        return nbt;
+    }
+
+    private static @NotNull RetrogenState fromNbt(@NotNull NbtCompound nbt) {
+        RetrogenState state = new RetrogenState();
+
+        NbtList completedList = nbt.getList("Completed", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < completedList.size(); i++) {
+            Identifier tree = Identifier.tryParse(completedList.getCompound(i).getString("Tree"));
+            if (tree != null) state.completed.add(tree);
+        }
+
+        NbtList processedList = nbt.getList("Processed", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < processedList.size(); i++) {
+            NbtCompound entry = processedList.getCompound(i);
+            Identifier tree = Identifier.tryParse(entry.getString("Tree"));
+            if (tree == null) continue;
+
+            Long2ObjectMap<long[]> regions = new Long2ObjectOpenHashMap<>();
+            NbtList regionList = entry.getList("Regions", NbtElement.COMPOUND_TYPE);
+
+            for (int j = 0; j < regionList.size(); j++) {
+                NbtCompound regionNbt = regionList.getCompound(j);
+                long[] bits = regionNbt.getLongArray("Chunks");
+                // Skip corrupted entries instead of failing the whole world
+                if (bits.length == 16) regions.put(regionNbt.getLong("Region"), bits);
+            }
+
+            state.processed.put(tree, regions);
+        }
+
+        return state;
+    }
+
+    private static long regionKey(@NotNull ChunkPos pos) {
+        return ChunkPos.toLong(pos.getRegionX(), pos.getRegionZ());
+    }
+
+    private static int chunkIndex(@NotNull ChunkPos pos) {
+        return pos.getRegionRelativeX() + pos.getRegionRelativeZ() * 32;
+    }
+}
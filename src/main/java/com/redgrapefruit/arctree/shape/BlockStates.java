@@ -0,0 +1,104 @@
+package com.redgrapefruit.arctree.shape;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.state.property.Property;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Converts structure palette entries to the command syntax of {@link BlockState}s, like
+ * {@code minecraft:oak_log[axis=y]}, and parses them back once the blocks are registered.
+ * <br><br>
+ * The tree shape cache stores its palette like this, so that it doesn't depend on raw state IDs, which change
+ * whenever the installed mods do.
+ */
+final class BlockStates {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Blocks that don't belong to the tree, matching what structures leave out or treat as empty
+     */
+    private static final Set<String> SKIPPED = Set.of("minecraft:air", "minecraft:cave_air", "minecraft:void_air", "minecraft:structure_void");
+
+    private BlockStates() {}
+
+    /**
+     * Converts an entry of a structure palette, a {@code Name} and its {@code Properties} as strings, without looking
+     * the block up. The properties are sorted by name, so equal states always give the same string.
+     *
+     * @return The state or {@code null} for air, structure voids and invalid names
+     */
+    static @Nullable String stringify(@NotNull NbtCompound nbt) {
+        Identifier id = Identifier.tryParse(nbt.getString("Name"));
+
+        if (id == null) {
+            LOGGER.warn("Invalid block {} in tree shape", nbt.getString("Name"));
+            return null;
+        }
+
+        if (SKIPPED.contains(id.toString())) return null;
+
+        NbtCompound properties = nbt.getCompound("Properties");
+        if (properties.isEmpty()) return id.toString();
+
+        return properties.getKeys()
+                .stream()
+                .sorted()
+                .map(key -> key + "=" + properties.getString(key))
+                .collect(Collectors.joining(",", id + "[", "]"));
+    }
+
+    /**
+     * Parses a state written by {@link #stringify}. Unknown properties are left at their default, with a warning.
+     *
+     * @return The parsed {@link BlockState} or {@code null} with a warning if the block isn't registered
+     */
+    static @Nullable BlockState parse(@NotNull String string) {
+        int bracket = string.indexOf('[');
+        Identifier id = Identifier.tryParse(bracket < 0 ? string : string.substring(0, bracket));
+
+        if (id == null || !Registry.BLOCK.containsId(id)) {
+            LOGGER.warn("Unknown block in tree shape: {}", string);
+            return null;
+        }
+
+        Block block = Registry.BLOCK.get(id);
+        BlockState state = block.getDefaultState();
+        if (bracket < 0) return state;
+
+        for (String entry : string.substring(bracket + 1, string.length() - 1).split(",")) {
+            String[] parts = entry.split("=", 2);
+            Property<?> property = parts.length == 2 ? block.getStateManager().getProperty(parts[0]) : null;
+
+            if (property == null) {
+                LOGGER.warn("Unknown property {} of {} in tree shape", entry, id);
+                continue;
+            }
+
+            state = with(state, property, parts[1]);
+        }
+
+        return state;
+    }
+
+    private static <T extends Comparable<T>> @NotNull BlockState with(@NotNull BlockState state, @NotNull Property<T> property, @NotNull String value) {
+        Optional<T> parsed = property.parse(value);
+
+        if (parsed.isEmpty()) {
+            LOGGER.warn("Invalid value {} of property {} in tree shape", value, property.getName());
+            return state;
+        }
+
+        return state.with(property, parsed.get());
+    }
+}
@@ -0,0 +1,207 @@
+package com.redgrapefruit.arctree.shape;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.state.property.Properties;
+import net.minecraft.tag.BlockTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A single shape of a {@link TreeShapeLibrary}, resolved against the block registry and the block tags.
+ * <br><br>
+ * Resolving finds the anchor and connects the leaves to the logs, which needs the {@code minecraft:logs} tag. Tags are
+ * only bound once a world is loaded, so shapes are resolved when they are first placed rather than when the library is
+ * loaded or compiled.
+ */
+final class TreeShape {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    static final TreeShape EMPTY = new TreeShape(new int[0], new BlockState[0], 0);
+
+    /**
+     * The furthest a block may be from the anchor horizontally, so that a tree never leaves the area
+     * a feature may place blocks in
+     */
+    private static final int MAX_RADIUS = 16;
+    private static final int MAX_HEIGHT = 127;
+
+    /**
+     * The highest distance at which leaves stay connected to a log
+     */
+    private static final int MAX_LEAVES_DISTANCE = 6;
+
+    /**
+     * The packed positions relative to the anchor, sorted bottom to top
+     */
+    final int[] packedBlocks;
+    final BlockState[] states;
+    final int radius;
+
+    /**
+     * The {@link #packedBlocks}, to look up whether the shape has a block somewhere
+     */
+    private final IntSet positions;
+
+    private TreeShape(int[] packedBlocks, BlockState[] states, int radius) {
+        this.packedBlocks = packedBlocks;
+        this.states = states;
+        this.radius = radius;
+        this.positions = new IntOpenHashSet(packedBlocks);
+    }
+
+    boolean hasBlock(int x, int y, int z) {
+        return positions.contains(pack(x, y, z));
+    }
+
+    /**
+     * Anchors the blocks at the bottom of the trunk and connects the leaves.
+     *
+     * @param name The name of the shape, for warnings
+     * @param positions The positions in the structure, without air and unknown blocks
+     * @param states The states at the positions, changed in place
+     * @return The resolved shape, or {@link #EMPTY} with a warning if it can't be used as a tree shape
+     */
+    static @NotNull TreeShape resolve(@NotNull String name, @NotNull List<BlockPos> positions, @NotNull List<BlockState> states) {
+        if (positions.isEmpty()) {
+            LOGGER.warn("Skipping empty tree shape {}", name);
+            return EMPTY;
+        }
+
+        BlockPos anchor = findAnchor(positions, states);
+        connectLeaves(positions, states);
+
+        // Sorted bottom to top for better section locality when placing
+        Integer[] order = new Integer[positions.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> positions.get(i).getY()));
+
+        int[] packedBlocks = new int[order.length];
+        BlockState[] sortedStates = new BlockState[order.length];
+        int radius = 0;
+
+        for (int i = 0; i < order.length; i++) {
+            BlockPos pos = positions.get(order[i]).subtract(anchor);
+
+            if (Math.abs(pos.getX()) > MAX_RADIUS || Math.abs(pos.getZ()) > MAX_RADIUS || Math.abs(pos.getY()) > MAX_HEIGHT) {
+                LOGGER.warn("Skipping tree shape {}, it reaches further than {} blocks from its trunk", name, MAX_RADIUS);
+                return EMPTY;
+            }
+
+            radius = Math.max(radius, Math.max(Math.abs(pos.getX()), Math.abs(pos.getZ())));
+            packedBlocks[i] = pack(pos.getX(), pos.getY(), pos.getZ());
+            sortedStates[i] = states.get(order[i]);
+        }
+
+        return new TreeShape(packedBlocks, sortedStates, radius);
+    }
+
+    private static int pack(int x, int y, int z) {
+        return (x & 0xFF) << 24 | (y & 0xFF) << 16 | (z & 0xFF) << 8;
+    }
+
+    /**
+     * Finds the bottom of the trunk: the lowest log closest to the middle of the other lowest logs.
+     * Without logs, the bottom center of the shape is used.
+     */
+    private static @NotNull BlockPos findAnchor(@NotNull List<BlockPos> positions, @NotNull List<BlockState> states) {
+        int minY = Integer.MAX_VALUE;
+        int minLogY = Integer.MAX_VALUE;
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+        int minZ = Integer.MAX_VALUE, maxZ = Integer.MIN_VALUE;
+
+        for (int i = 0; i < positions.size(); i++) {
+            BlockPos pos = positions.get(i);
+            minY = Math.min(minY, pos.getY());
+            minX = Math.min(minX, pos.getX());
+            maxX = Math.max(maxX, pos.getX());
+            minZ = Math.min(minZ, pos.getZ());
+            maxZ = Math.max(maxZ, pos.getZ());
+
+            if (states.get(i).isIn(BlockTags.LOGS)) minLogY = Math.min(minLogY, pos.getY());
+        }
+
+        if (minLogY == Integer.MAX_VALUE) return new BlockPos((minX + maxX) / 2, minY, (minZ + maxZ) / 2);
+
+        // Wide trunks have several logs at the bottom, pick the one in the middle
+        long sumX = 0, sumZ = 0, count = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            if (positions.get(i).getY() == minLogY && states.get(i).isIn(BlockTags.LOGS)) {
+                sumX += positions.get(i).getX();
+                sumZ += positions.get(i).getZ();
+                count++;
+            }
+        }
+
+        double centerX = (double) sumX / count;
+        double centerZ = (double) sumZ / count;
+        BlockPos anchor = null;
+        double anchorDistance = Double.MAX_VALUE;
+
+        for (int i = 0; i < positions.size(); i++) {
+            BlockPos pos = positions.get(i);
+            if (pos.getY() != minLogY || !states.get(i).isIn(BlockTags.LOGS)) continue;
+
+            double distance = (pos.getX() - centerX) * (pos.getX() - centerX) + (pos.getZ() - centerZ) * (pos.getZ() - centerZ);
+            if (distance < anchorDistance) {
+                anchor = pos;
+                anchorDistance = distance;
+            }
+        }
+
+        return anchor;
+    }
+
+    /**
+     * Sets the distance of all leaves connected to a log, so they don't decay once placed. Structures saved from
+     * player-built trees usually have persistent leaves, which are turned into regular ones as well.
+     * Leaves that aren't connected to any log are kept as they are.
+     */
+    private static void connectLeaves(@NotNull List<BlockPos> positions, @NotNull List<BlockState> states) {
+        Long2IntMap indices = new Long2IntOpenHashMap(positions.size());
+        indices.defaultReturnValue(-1);
+        for (int i = 0; i < positions.size(); i++) indices.put(positions.get(i).asLong(), i);
+
+        int[] distances = new int[positions.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        for (int i = 0; i < positions.size(); i++) {
+            if (states.get(i).isIn(BlockTags.LOGS)) queue.add(i);
+            else distances[i] = Integer.MAX_VALUE;
+        }
+
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (distances[current] >= MAX_LEAVES_DISTANCE) continue;
+
+            for (Direction direction : Direction.values()) {
+                int neighbour = indices.get(positions.get(current).offset(direction).asLong());
+                if (neighbour < 0 || distances[neighbour] != Integer.MAX_VALUE) continue;
+                if (!states.get(neighbour).contains(Properties.DISTANCE_1_7)) continue;
+
+                distances[neighbour] = distances[current] + 1;
+                queue.add(neighbour);
+            }
+        }
+
+        for (int i = 0; i < positions.size(); i++) {
+            BlockState state = states.get(i);
+            if (distances[i] == Integer.MAX_VALUE || !state.contains(Properties.DISTANCE_1_7)) continue;
+
+            state = state.with(Properties.DISTANCE_1_7, distances[i]);
+            if (state.contains(Properties.PERSISTENT)) state = state.with(Properties.PERSISTENT, false);
+            states.set(i, state);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.redgrapefruit.arctree.shape;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Converts a directory of structure {@code .nbt} files into the cache file format of {@link TreeShapeLibrary}.
+ * <br><br>
+ * The cache file starts with a header of a magic number, the format version and a fingerprint of the structure files,
+ * followed by the shared palette and then every shape with its name, local palette and packed blocks.
+ * <br><br>
+ * Positions are kept as they are in the structure, finding the anchor and connecting the leaves needs the block tags
+ * and is left to the {@link TreeShape} once the shape is resolved.
+ */
+final class TreeShapeCompiler {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    static final int MAGIC = 0x41524354; // ARCT
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 4 + 4 + 8;
+
+    /**
+     * The highest coordinate a block may have in the structure, so that positions fit into a byte each
+     */
+    private static final int MAX_SIZE = 255;
+    private static final int MAX_LOCAL_PALETTE = 256;
+
+    private TreeShapeCompiler() {}
+
+    /**
+     * Hashes the names, sizes and modification times of all structure files in a directory.
+     */
+    static long fingerprint(@NotNull Path directory) throws IOException {
+        long hash = VERSION;
+
+        for (Path file : listStructures(directory)) {
+            hash = hash * 31 + file.getFileName().toString().hashCode();
+            hash = hash * 31 + Files.size(file);
+            hash = hash * 31 + Files.getLastModifiedTime(file).toMillis();
+        }
+
+        return hash;
+    }
+
+    static boolean isUpToDate(@NotNull Path cacheFile, long fingerprint) throws IOException {
+        if (!Files.isRegularFile(cacheFile) || Files.size(cacheFile) < HEADER_SIZE) return false;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            return input.readInt() == MAGIC && input.readInt() == VERSION && input.readLong() == fingerprint;
+        }
+    }
+
+    static void compile(@NotNull Path directory, @NotNull Path cacheFile, long fingerprint) throws IOException {
+        Object2IntMap<String> palette = new Object2IntLinkedOpenHashMap<>();
+        ByteArrayOutputStream shapeBytes = new ByteArrayOutputStream();
+        DataOutputStream shapes = new DataOutputStream(shapeBytes);
+        int shapeCount = 0;
+
+        for (Path file : listStructures(directory)) {
+            String fileName = file.getFileName().toString();
+            String name = fileName.substring(0, fileName.length() - ".nbt".length());
+
+            NbtCompound nbt;
+            try (InputStream input = Files.newInputStream(file)) {
+                nbt = NbtIo.readCompressed(input);
+            }
+
+            if (compileShape(name, nbt, palette, shapes)) shapeCount++;
+        }
+
+        Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+        Path temporaryFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fingerprint);
+
+            output.writeInt(palette.size());
+            for (String state : palette.keySet()) writeString(output, state);
+
+            output.writeInt(shapeCount);
+            shapeBytes.writeTo(output);
+        }
+
+        // Never leave a half-written cache behind
+        Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Converts a single structure and writes it out. Nothing is looked up in the registries or tags, which may not be
+     * complete yet, the palette is kept as it is written in the structure.
+     *
+     * @return {@code false} if the structure can't be used as a tree shape
+     */
+    private static boolean compileShape(@NotNull String name, @NotNull NbtCompound nbt, @NotNull Object2IntMap<String> palette, @NotNull DataOutputStream output) throws IOException {
+        // Structures with several palettes, like shipwrecks, store them in "palettes", trees only need the first one
+        NbtList paletteNbt = nbt.contains("palettes", NbtElement.LIST_TYPE)
+                ? nbt.getList("palettes", NbtElement.LIST_TYPE).getList(0)
+                : nbt.getList("palette", NbtElement.COMPOUND_TYPE);
+
+        // null for air and structure voids
+        String[] structurePalette = new String[paletteNbt.size()];
+        for (int i = 0; i < structurePalette.length; i++) {
+            structurePalette[i] = BlockStates.stringify(paletteNbt.getCompound(i));
+        }
+
+        NbtList blocksNbt = nbt.getList("blocks", NbtElement.COMPOUND_TYPE);
+        Object2IntMap<String> localPalette = new Object2IntLinkedOpenHashMap<>();
+        IntList globalIndices = new IntArrayList();
+        IntList packedBlocks = new IntArrayList(blocksNbt.size());
+
+        for (int i = 0; i < blocksNbt.size(); i++) {
+            NbtCompound block = blocksNbt.getCompound(i);
+            int stateIndex = block.getInt("state");
+            if (stateIndex < 0 || stateIndex >= structurePalette.length) continue;
+
+            String state = structurePalette[stateIndex];
+            if (state == null) continue;
+
+            NbtList pos = block.getList("pos", NbtElement.INT_TYPE);
+            int x = pos.getInt(0), y = pos.getInt(1), z = pos.getInt(2);
+
+            if (x < 0 || x > MAX_SIZE || y < 0 || y > MAX_SIZE || z < 0 || z > MAX_SIZE) {
+                LOGGER.warn("Skipping tree shape {}, it is bigger than {} blocks", name, MAX_SIZE + 1);
+                return false;
+            }
+
+            int globalIndex = palette.computeIfAbsent(state, key -> palette.size());
+
+            if (!localPalette.containsKey(state)) {
+                if (localPalette.size() == MAX_LOCAL_PALETTE) {
+                    LOGGER.warn("Skipping tree shape {}, it has more than {} different blocks", name, MAX_LOCAL_PALETTE);
+                    return false;
+                }
+
+                localPalette.put(state, localPalette.size());
+                globalIndices.add(globalIndex);
+            }
+
+            packedBlocks.add(x << 24 | y << 16 | z << 8 | localPalette.getInt(state));
+        }
+
+        if (packedBlocks.isEmpty()) {
+            LOGGER.warn("Skipping empty tree shape {}", name);
+            return false;
+        }
+
+        writeString(output, name);
+
+        output.writeInt(globalIndices.size());
+        for (int i = 0; i < globalIndices.size(); i++) output.writeInt(globalIndices.getInt(i));
+
+        output.writeInt(packedBlocks.size());
+        for (int i = 0; i < packedBlocks.size(); i++) output.writeInt(packedBlocks.getInt(i));
+
+        return true;
+    }
+
+    private static @NotNull List<Path> listStructures(@NotNull Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(".nbt"))
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    /**
+     * Writes an unsigned {@code short} length followed by the UTF-8 bytes of the string
+     */
+    private static void writeString(@NotNull DataOutputStream output, @NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IOException("String too long for the tree shape cache: " + string);
+
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+}
@@ -0,0 +1,310 @@
+package com.redgrapefruit.arctree.shape;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A set of hand-built tree shapes, loaded from a directory of structure {@code .nbt} files.
+ * <br><br>
+ * The structure files are converted once by the {@link TreeShapeCompiler} into a compact cache file of packed
+ * positions and palette indices, which is memory-mapped on every following load. The NBT is only parsed again when
+ * the structure files change.
+ * <br><br>
+ * Nothing in the cache depends on the block registry or the block tags. Every shape is resolved into a {@link TreeShape}
+ * when it is first needed, which looks up its blocks and finds its anchor. So a library may be loaded at mod
+ * initialization, before other mods have registered their blocks and before the tags are bound. Until a shape is
+ * resolved, its blocks only live in the mapped file.
+ * <br><br>
+ * Every packed block of a resolved shape is an {@code int} holding the position relative to the shape's anchor (the
+ * bottom of the trunk) in three signed bytes.
+ */
+public final class TreeShapeLibrary {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Map<Identifier, TreeShapeLibrary> LIBRARIES = new ConcurrentHashMap<>();
+
+    private final @NotNull MappedByteBuffer buffer;
+    private final @NotNull String[] paletteStrings;
+    private final @NotNull String[] names;
+
+    /**
+     * The resolved {@link #paletteStrings} with {@code null} for unknown blocks, or {@code null} until the first shape
+     * is resolved
+     */
+    private @Nullable BlockState[] palette;
+
+    /**
+     * The resolved shapes, {@code null} until they are first needed
+     */
+    private final AtomicReferenceArray<TreeShape> shapes;
+
+    /**
+     * The offset of every shape's local palette in the {@link #buffer}
+     */
+    private final int[] paletteOffsets;
+
+    /**
+     * The offset of every shape's packed blocks in the {@link #buffer}
+     */
+    private final int[] blockOffsets;
+    private final int[] blockCounts;
+
+    /**
+     * The largest radius of all shapes, {@code -1} until all shapes are resolved
+     */
+    private volatile int maxRadius = -1;
+
+    private TreeShapeLibrary(@NotNull MappedByteBuffer buffer) {
+        this.buffer = buffer;
+
+        int position = TreeShapeCompiler.HEADER_SIZE;
+
+        paletteStrings = new String[buffer.getInt(position)];
+        position += 4;
+        for (int i = 0; i < paletteStrings.length; i++) {
+            paletteStrings[i] = readString(position);
+            position += 2 + stringLength(position);
+        }
+
+        int shapeCount = buffer.getInt(position);
+        position += 4;
+
+        names = new String[shapeCount];
+        paletteOffsets = new int[shapeCount];
+        blockOffsets = new int[shapeCount];
+        blockCounts = new int[shapeCount];
+        shapes = new AtomicReferenceArray<>(shapeCount);
+
+        for (int shape = 0; shape < shapeCount; shape++) {
+            names[shape] = readString(position);
+            position += 2 + stringLength(position);
+
+            int localPaletteSize = buffer.getInt(position);
+            paletteOffsets[shape] = position + 4;
+            position += 4 + localPaletteSize * 4;
+
+            blockCounts[shape] = buffer.getInt(position);
+            blockOffsets[shape] = position + 4;
+            position += 4 + blockCounts[shape] * 4;
+        }
+    }
+
+    /**
+     * Loads a directory of structure files, using a cache file in {@code .arctree} inside the game directory.
+     *
+     * @param id The {@link Identifier} the library is referenced by in tree configs
+     * @param directory The directory containing the {@code .nbt} structure files
+     * @return The loaded {@link TreeShapeLibrary}
+     */
+    public static @NotNull TreeShapeLibrary load(@NotNull Identifier id, @NotNull Path directory) {
+        Objects.requireNonNull(id, "ID must not be null");
+
+        Path cacheFile = FabricLoader.getInstance().getGameDir()
+                .resolve(".arctree")
+                .resolve(id.getNamespace())
+                .resolve(id.getPath() + ".bin");
+
+        return load(id, directory, cacheFile);
+    }
+
+    /**
+     * Loads a directory of structure files, converting them into the cache file first if they have changed.
+     *
+     * @param id The {@link Identifier} the library is referenced by in tree configs
+     * @param directory The directory containing the {@code .nbt} structure files
+     * @param cacheFile The file the converted shapes are kept in
+     * @return The loaded {@link TreeShapeLibrary}
+     */
+    public static @NotNull TreeShapeLibrary load(@NotNull Identifier id, @NotNull Path directory, @NotNull Path cacheFile) {
+        Objects.requireNonNull(id, "ID must not be null");
+        Objects.requireNonNull(directory, "Directory must not be null");
+        Objects.requireNonNull(cacheFile, "Cache file must not be null");
+
+        if (LIBRARIES.containsKey(id))
+            throw new RuntimeException("A tree shape library is already loaded under " + id);
+
+        try {
+            long fingerprint = TreeShapeCompiler.fingerprint(directory);
+
+            if (!TreeShapeCompiler.isUpToDate(cacheFile, fingerprint)) {
+                LOGGER.info("Converting tree shapes of {} from {}", id, directory);
+                TreeShapeCompiler.compile(directory, cacheFile, fingerprint);
+            }
+
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            TreeShapeLibrary library = new TreeShapeLibrary(buffer);
+            LIBRARIES.put(id, library);
+            return library;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load tree shapes of " + id + " from " + directory, e);
+        }
+    }
+
+    /**
+     * Looks up a library loaded with {@link #load}.
+     *
+     * @return The {@link TreeShapeLibrary} or {@code null} if none is loaded under the {@link Identifier}
+     */
+    public static @Nullable TreeShapeLibrary get(@NotNull Identifier id) {
+        return LIBRARIES.get(id);
+    }
+
+    public int getShapeCount() {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of a shape, which is the name of its structure file without the extension.
+     */
+    public @NotNull String getName(int shape) {
+        return names[shape];
+    }
+
+    /**
+     * Returns the index of the shape with the given name, or {@code -1} if there is none.
+     */
+    public int indexOf(@NotNull String name) {
+        for (int shape = 0; shape < names.length; shape++) {
+            if (names[shape].equals(name)) return shape;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the largest horizontal distance of any block from the anchor, over all shapes. Resolves all shapes.
+     */
+    public int getMaxRadius() {
+        int maxRadius = this.maxRadius;
+
+        if (maxRadius < 0) {
+            maxRadius = 0;
+            for (int shape = 0; shape < names.length; shape++) maxRadius = Math.max(maxRadius, getShape(shape).radius);
+
+            this.maxRadius = maxRadius;
+        }
+
+        return maxRadius;
+    }
+
+    /**
+     * Returns the amount of blocks of a shape, without air and blocks that aren't registered. Resolves the shape.
+     */
+    public int getBlockCount(int shape) {
+        return getShape(shape).packedBlocks.length;
+    }
+
+    /**
+     * Returns a packed block of a shape, to be read with {@link #unpackX}, {@link #unpackY} and {@link #unpackZ}.
+     * Blocks are sorted bottom to top.
+     */
+    public int getPackedBlock(int shape, int block) {
+        return getShape(shape).packedBlocks[block];
+    }
+
+    /**
+     * Returns the {@link BlockState} of a block of a shape, with the distance of connected leaves already set.
+     */
+    public @NotNull BlockState getState(int shape, int block) {
+        return getShape(shape).states[block];
+    }
+
+    /**
+     * Returns whether a shape has a block at a position relative to its anchor. Resolves the shape.
+     */
+    public boolean hasBlock(int shape, int x, int y, int z) {
+        return getShape(shape).hasBlock(x, y, z);
+    }
+
+    public static int unpackX(int packed) {
+        return (byte) (packed >>> 24);
+    }
+
+    public static int unpackY(int packed) {
+        return (byte) (packed >>> 16);
+    }
+
+    public static int unpackZ(int packed) {
+        return (byte) (packed >>> 8);
+    }
+
+    private @NotNull TreeShape getShape(int shape) {
+        TreeShape resolved = shapes.get(shape);
+        if (resolved != null) return resolved;
+
+        // World generation threads may get here at the same time
+        synchronized (this) {
+            resolved = shapes.get(shape);
+
+            if (resolved == null) {
+                resolved = resolveShape(shape);
+                shapes.set(shape, resolved);
+            }
+
+            return resolved;
+        }
+    }
+
+    /**
+     * Looks up the blocks of a shape, leaving out the ones that aren't registered, and anchors it.
+     * Must hold the lock of this library.
+     */
+    private @NotNull TreeShape resolveShape(int shape) {
+        if (palette == null) {
+            palette = new BlockState[paletteStrings.length];
+            for (int i = 0; i < palette.length; i++) palette[i] = BlockStates.parse(paletteStrings[i]);
+        }
+
+        List<BlockPos> positions = new ArrayList<>(blockCounts[shape]);
+        List<BlockState> states = new ArrayList<>(blockCounts[shape]);
+
+        for (int block = 0; block < blockCounts[shape]; block++) {
+            int packed = buffer.getInt(blockOffsets[shape] + block * 4);
+            BlockState state = palette[buffer.getInt(paletteOffsets[shape] + (packed & 0xFF) * 4)];
+
+            // Blocks whose mod isn't installed are left out, so they don't cut holes into whatever the tree grows into
+            if (state == null || state.isAir()) continue;
+
+            positions.add(new BlockPos(packed >>> 24, (packed >>> 16) & 0xFF, (packed >>> 8) & 0xFF));
+            states.add(state);
+        }
+
+        return TreeShape.resolve(names[shape], positions, states);
+    }
+
+    /**
+     * Reads a string written by {@link TreeShapeCompiler}, an unsigned {@code short} length followed by UTF-8 bytes
+     */
+    private @NotNull String readString(int position) {
+        byte[] bytes = new byte[stringLength(position)];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int stringLength(int position) {
+        return buffer.getShort(position) & 0xFFFF;
+    }
+}
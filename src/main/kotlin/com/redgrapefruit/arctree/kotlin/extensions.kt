@@ -1,12 +1,14 @@
 package com.redgrapefruit.arctree.kotlin
 
 import com.redgrapefruit.arctree.ConfiguredTree
+import com.redgrapefruit.arctree.StructureTreeBuilder
 import com.redgrapefruit.arctree.TreeBuilder
 import net.fabricmc.fabric.api.biome.v1.BiomeSelectionContext
 import net.fabricmc.fabric.api.biome.v1.BiomeSelectors
 import net.minecraft.block.Block
 import net.minecraft.block.BlockState
 import net.minecraft.block.Blocks
+import net.minecraft.util.Identifier
 import net.minecraft.world.gen.decorator.PlacementModifier
 import net.minecraft.world.gen.feature.size.FeatureSize
 import net.minecraft.world.gen.feature.size.TwoLayersFeatureSize
@@ -44,6 +46,10 @@ class TreeScope @PublishedApi internal constructor() {
     private var selector: Predicate<BiomeSelectionContext> = BiomeSelectors.foundInOverworld()
     private var overrideDefaultModifiers: Boolean = false
     private var spawnChance: Int = 3
+    private var retrogen: Boolean = false
+    private var lazy: Boolean = false
+    private var planCollisions: Boolean = false
+    private var collisionRadius: Int? = null
 
     fun trunkPlacer(trunkPlacer: TrunkPlacer) {
         this.trunkPlacer = trunkPlacer
@@ -142,6 +148,23 @@ class TreeScope @PublishedApi internal constructor() {
         spawnChance = chance
     }
 
+    fun retrogen() {
+        retrogen = true
+    }
+
+    fun lazy() {
+        lazy = true
+    }
+
+    fun planCollisions() {
+        planCollisions = true
+    }
+
+    fun planCollisions(collisionRadius: Int) {
+        planCollisions = true
+        this.collisionRadius = collisionRadius
+    }
+
     @PublishedApi
     internal fun makeBuilder(): TreeBuilder {
         val builder = TreeBuilder.create()
@@ -159,6 +182,133 @@ class TreeScope @PublishedApi internal constructor() {
         placementModifiers.forEach(builder::addPlacementModifier)
         if (overrideDefaultModifiers) builder.overrideDefaultPlacementModifiers()
         builder.biomeSelector(selector)
+        if (retrogen) builder.retrogen()
+        if (lazy) builder.lazy()
+        if (planCollisions) {
+            // Passed on as is, so the builder validates it
+            val radius = collisionRadius
+            if (radius != null) builder.planCollisions(radius) else builder.planCollisions()
+        }
+
+        return builder
+    }
+}
+
+@TreeDSL
+inline fun structureTree(action: StructureTreeScope.() -> Unit): ConfiguredTree {
+    val scope = StructureTreeScope()
+    scope.action()
+    return scope.makeBuilder().build()
+}
+
+class StructureTreeScope @PublishedApi internal constructor() {
+
+    private var library: Identifier? = null
+    private var decorators: MutableList<TreeDecorator> = mutableListOf()
+    private var dirtProvider: BlockStateProvider = SimpleBlockStateProvider.of(Blocks.DIRT.defaultState)
+    private var forceDirt: Boolean = false
+    private var placementModifiers: MutableList<PlacementModifier> = mutableListOf()
+    private var selector: Predicate<BiomeSelectionContext> = BiomeSelectors.foundInOverworld()
+    private var overrideDefaultModifiers: Boolean = false
+    private var spawnChance: Int = 3
+    private var retrogen: Boolean = false
+    private var lazy: Boolean = false
+    private var planCollisions: Boolean = false
+    private var collisionRadius: Int? = null
+
+    fun library(library: Identifier) {
+        this.library = library
+    }
+
+    fun dirtBlock(provider: BlockStateProvider) {
+        this.dirtProvider = provider
+    }
+
+    fun dirtBlock(block: Block) {
+        this.dirtProvider = SimpleBlockStateProvider.of(block.defaultState)
+    }
+
+    fun dirtBlock(state: BlockState) {
+        this.dirtProvider = SimpleBlockStateProvider.of(state)
+    }
+
+    fun forceDirt() {
+        this.forceDirt = true
+    }
+
+    fun decorator(decorator: TreeDecorator) {
+        this.decorators.add(decorator)
+    }
+
+    fun decorators(list: Collection<TreeDecorator>) {
+        this.decorators.addAll(list)
+    }
+
+    fun decorators(action: MutableList<TreeDecorator>.() -> Unit) {
+        this.decorators.addAll(buildList(action))
+    }
+
+    fun modifier(modifier: PlacementModifier) {
+        placementModifiers += modifier
+    }
+
+    fun modifiers(list: Collection<PlacementModifier>) {
+        this.placementModifiers.addAll(list)
+    }
+
+    fun modifiers(action: MutableList<PlacementModifier>.() -> Unit) {
+        this.placementModifiers.addAll(buildList(action))
+    }
+
+    fun selector(selector: Predicate<BiomeSelectionContext>) {
+        this.selector = selector
+    }
+
+    fun overrideDefaultModifiers() {
+        overrideDefaultModifiers = true
+    }
+
+    @TreeBuilder.EffectiveWithDefaultModifiersOnly
+    fun spawnChance(chance: Int) {
+        spawnChance = chance
+    }
+
+    fun retrogen() {
+        retrogen = true
+    }
+
+    fun lazy() {
+        lazy = true
+    }
+
+    fun planCollisions() {
+        planCollisions = true
+    }
+
+    fun planCollisions(collisionRadius: Int) {
+        planCollisions = true
+        this.collisionRadius = collisionRadius
+    }
+
+    @PublishedApi
+    internal fun makeBuilder(): StructureTreeBuilder {
+        val builder = StructureTreeBuilder.create()
+
+        builder.library(library!!)
+        decorators.forEach(builder::addDecorator)
+        builder.dirtProvider(dirtProvider)
+        if (forceDirt) builder.forceDirt()
+        builder.spawnChance(spawnChance)
+        placementModifiers.forEach(builder::addPlacementModifier)
+        if (overrideDefaultModifiers) builder.overrideDefaultPlacementModifiers()
+        builder.biomeSelector(selector)
+        if (retrogen) builder.retrogen()
+        if (lazy) builder.lazy()
+        if (planCollisions) {
+            // Passed on as is, so the builder validates it
+            val radius = collisionRadius
+            if (radius != null) builder.planCollisions(radius) else builder.planCollisions()
+        }
 
         return builder
     }